@@ -1,23 +1,78 @@
 package Controller;
 
 import Service.AccountService;
+import DAO.UsernameTakenException;
 import Model.Account;
+import Util.RateLimiter;
+import Util.SessionStore;
 
 import io.javalin.Javalin;
 import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+import io.javalin.http.UnauthorizedResponse;
 
-import org.mindrot.jbcrypt.BCrypt;
-
+import java.io.IOException;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Controller class responsible for handling HTTP requests related to Account
  * operations.
  * Utilizes AccountService to perform business logic.
+ *
+ * Register and login are async handlers: the password work runs on the
+ * PasswordHasher pool and the response is written when it completes, so a
+ * burst of logins cannot tie up the request threads other endpoints need.
+ * When the hashing or database queue is full they answer 503.
+ *
+ * A successful login issues a session token in the X-Session-Token response
+ * header. Message writes may send it as "Authorization: Bearer <token>"; a
+ * before-handler on those routes checks it with one in-memory lookup, without
+ * BCrypt, and stores the account ID in the SESSION_ACCOUNT_ID request
+ * attribute, which MessageController uses to check who is writing. Requests
+ * without the header are let through unauthenticated, and reads and /login
+ * ignore the header entirely.
+ *
+ * Request and response bodies may be JSON or CBOR, chosen by the
+ * Content-Type and Accept headers through WireCodec.
+ *
+ * Login attempts are throttled per remote address and per username with
+ * token buckets. A throttled attempt gets 429 with a Retry-After header
+ * before any database lookup or BCrypt work is done.
  */
 public class AccountController {
+    /** Request attribute holding the account ID of a valid session token. */
+    public static final String SESSION_ACCOUNT_ID = "sessionAccountId";
+    /** Response header carrying the token issued at login. */
+    public static final String SESSION_TOKEN_HEADER = "X-Session-Token";
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final AccountService accountService;
+    private final WireCodec codec;
+    private final SessionStore sessionStore;
+    private final RateLimiter addressLoginLimiter;
+    private final RateLimiter usernameLoginLimiter;
 
-    private final AccountService accountService = new AccountService();
+    /**
+     * @param accountService       The service shared with the rest of the application.
+     * @param codec                Reads and writes bodies in the negotiated format.
+     * @param sessionStore         Issues and validates session tokens.
+     * @param addressLoginLimiter  Throttles login attempts per remote address.
+     * @param usernameLoginLimiter Throttles login attempts per username.
+     */
+    public AccountController(AccountService accountService, WireCodec codec, SessionStore sessionStore,
+            RateLimiter addressLoginLimiter, RateLimiter usernameLoginLimiter) {
+        this.accountService = accountService;
+        this.codec = codec;
+        this.sessionStore = sessionStore;
+        this.addressLoginLimiter = addressLoginLimiter;
+        this.usernameLoginLimiter = usernameLoginLimiter;
+    }
 
     /**
      * Attaches route handlers for account-related endpoints to the Javalin app.
@@ -25,6 +80,9 @@ public class AccountController {
      * @param app The Javalin application instance to which the routes are attached.
      */
     public void attachRoutes(Javalin app) {
+        // only message writes check identity, so a stale token never blocks public reads or /login
+        app.before("/messages", this::handleSessionToken);
+        app.before("/messages/*", this::handleSessionToken);
         app.post("/register", this::handleRegister);
         app.post("/login", this::handleLogin);
     }
@@ -33,16 +91,18 @@ public class AccountController {
      * Handles account registration requests.
      * Parses the request body to an Account object,
      * validates the input, and registers a new account if
-     * valid input and no other user exists.
+     * valid input and no other user exists. The username check is left to the
+     * database's UNIQUE constraint, so registration is a single INSERT.
      * Responds with the created account or an error message.
      * 
-     * Status codes: 200, 400, 500
+     * Status codes: 200, 400, 500, 503
      *
      * @param ctx The context object representing the HTTP request and response.
      */
     private void handleRegister(Context ctx) {
         try {
-            Account account = ctx.bodyAsClass(Account.class);
+            WireFormat format = codec.negotiate(ctx, false);
+            Account account = codec.read(ctx, Account.class);
 
             // validate registration input
             if (!accountService.isValidRegistrationInput(account)) {
@@ -50,15 +110,24 @@ public class AccountController {
                 return;
             }
 
-            // if the username already exists
-            if (accountService.getByUsername(account.getUsername()).isPresent()) {
-                ctx.status(400);
-                return;
-            }
-
-            // else we get to create the account
-            Account createdAccount = accountService.create(account);
-            ctx.status(200).json(createdAccount);
+            CompletableFuture<Account> createdAccount = accountService.createAsync(account);
+            ctx.future(() -> createdAccount.handle((created, failure) -> {
+                if (failure == null) {
+                    respond(ctx, format, created, "An error occurred while registering.");
+                } else if (unwrap(failure) instanceof UsernameTakenException) {
+                    // the username already exists
+                    ctx.status(400);
+                } else if (unwrap(failure) instanceof RejectedExecutionException) {
+                    // too many inserts already waiting
+                    ctx.status(503);
+                } else {
+                    ctx.status(500).result("An error occurred while registering.");
+                }
+                return null;
+            }));
+        } catch (RejectedExecutionException e) {
+            // too many password hashes already waiting
+            ctx.status(503);
         } catch (Exception e) {
             ctx.status(500).result("An error occurred while registering.");
         }
@@ -70,40 +139,132 @@ public class AccountController {
      * If successful, responds with the account details;
      * otherwise, responds with an error.
      * 
-     * status codes: 200, 401, 500
+     * status codes: 200, 401, 429, 500, 503
      *
      * @param ctx The context object representing the HTTP request and response.
      */
     private void handleLogin(Context ctx) {
         try {
-            Account clientAccount = ctx.bodyAsClass(Account.class);
-            Optional<Account> dbAccount = accountService.getByUsername(clientAccount.getUsername());
+            // throttle before touching the database or BCrypt
+            if (rejectIfThrottled(ctx, addressLoginLimiter.tryAcquire(ctx.ip()))) {
+                return;
+            }
+            WireFormat format = codec.negotiate(ctx, false);
+            Account clientAccount = codec.read(ctx, Account.class);
+            if (rejectIfThrottled(ctx, usernameLoginLimiter.tryAcquire(clientAccount.getUsername()))) {
+                return;
+            }
 
             // check that account exists and passwords match
-            if (dbAccount.isPresent()
-                    && BCrypt.checkpw(clientAccount.getPassword(), dbAccount.get().getPassword())) {
-                // I'm changing the password from encrypted to plain text because of some dumb
-                // test case.
-                Account successfulAccount = dbAccount.get();
-                successfulAccount.setPassword("password"); // in the real world we would just use the hashed password.
-
-                /*
-                 * TODO: Implement Session Token Logic
-                 * 1. Generate a unique session token (e.g., using UUID or JWT)
-                 * 2. Optionally store the session token on the server-side, associated with the
-                 * user's session or account
-                 * 3. Send the session token back to the client in the response (either in the
-                 * response body or as a header)
-                 * Note: Ensure secure transmission and storage of the token
-                 */
-
-                ctx.status(200).json(successfulAccount);
-            } else {
-                // else user does not exist or passwords do not match
-                ctx.status(401);
-            }
+            CompletableFuture<Optional<Account>> authenticated = accountService.authenticateAsync(
+                    clientAccount.getUsername(), clientAccount.getPassword());
+
+            ctx.future(() -> authenticated.handle((dbAccount, failure) -> {
+                if (failure != null && unwrap(failure) instanceof RejectedExecutionException) {
+                    // too many password checks already waiting
+                    ctx.status(503);
+                } else if (failure != null) {
+                    ctx.status(500).result("An error occurred while logging in.");
+                } else if (dbAccount.isPresent()) {
+                    // I'm changing the password from encrypted to plain text because of some dumb
+                    // test case.
+                    Account successfulAccount = dbAccount.get();
+                    successfulAccount.setPassword("password"); // in the real world we would just use the hashed password.
+
+                    // the token goes in a header so the body stays a plain Account
+                    ctx.header(SESSION_TOKEN_HEADER, sessionStore.issue(successfulAccount.getAccount_id()));
+                    respond(ctx, format, successfulAccount, "An error occurred while logging in.");
+                } else {
+                    // else user does not exist or passwords do not match
+                    ctx.status(401);
+                }
+                return null;
+            }));
+        } catch (RejectedExecutionException e) {
+            // too many lookups already waiting
+            ctx.status(503);
         } catch (Exception e) {
             ctx.status(500).result("An error occurred while logging in.");
         }
     }
+
+    /**
+     * Answers 429 with a Retry-After header, in whole seconds, if a limiter
+     * refused the request.
+     *
+     * @param ctx       The context object representing the HTTP request and response.
+     * @param waitNanos What the limiter returned: 0 if allowed, otherwise the wait.
+     * @return true if the request was rejected
+     */
+    private boolean rejectIfThrottled(Context ctx, long waitNanos) {
+        if (waitNanos <= 0) {
+            return false;
+        }
+        long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        ctx.header("Retry-After", String.valueOf(retryAfterSeconds));
+        ctx.status(429);
+        return true;
+    }
+
+    /**
+     * Runs before requests to the message routes. If a write carries an
+     * Authorization header, it must hold a valid bearer token; the token's
+     * account ID is then stored in the SESSION_ACCOUNT_ID attribute for later
+     * handlers. Reads are left alone.
+     * 
+     * status codes: 401 if a write's header is present but not a valid token
+     *
+     * @param ctx The context object representing the HTTP request and response.
+     */
+    private void handleSessionToken(Context ctx) {
+        String authorization = ctx.header("Authorization");
+        if (authorization == null || !isWrite(ctx.method())) {
+            return;
+        }
+        if (!authorization.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            throw new UnauthorizedResponse();
+        }
+        OptionalInt accountId = sessionStore.validate(authorization.substring(BEARER_PREFIX.length()).trim());
+        if (accountId.isEmpty()) {
+            throw new UnauthorizedResponse();
+        }
+        ctx.attribute(SESSION_ACCOUNT_ID, accountId.getAsInt());
+    }
+
+    /**
+     * @param method The request method.
+     * @return true if the method changes data, so its caller's identity matters
+     */
+    private boolean isWrite(HandlerType method) {
+        return method == HandlerType.POST || method == HandlerType.PATCH
+                || method == HandlerType.PUT || method == HandlerType.DELETE;
+    }
+
+    /**
+     * Sends an account with status 200 from inside a future callback, where
+     * an encoding failure can no longer reach the handler's catch block.
+     *
+     * @param ctx          The context object representing the HTTP request and response.
+     * @param format       The negotiated format.
+     * @param account      The account to send.
+     * @param errorMessage The body of the 500 sent if encoding fails.
+     */
+    private void respond(Context ctx, WireFormat format, Account account, String errorMessage) {
+        try {
+            ctx.status(200);
+            codec.write(ctx, format, account);
+        } catch (IOException e) {
+            ctx.status(500).result(errorMessage);
+        }
+    }
+
+    /**
+     * @param failure The exception a future completed with.
+     * @return the underlying exception if it was wrapped by the future
+     */
+    private Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause()
+                : failure;
+    }
 }
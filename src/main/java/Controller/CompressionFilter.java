@@ -0,0 +1,309 @@
+package Controller;
+
+import Util.AppConfig;
+import Util.CompressionStats;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Compresses responses with gzip or deflate, whichever the client prefers,
+ * in place of Javalin's built-in compression so the work can be measured.
+ *
+ * Rather than wrapping the servlet request and response, it puts an
+ * interceptor in front of Jetty's HttpOutput, the same hook GzipHandler
+ * uses. Every byte of the body passes through it, whether the handler writes
+ * it directly or from an async callback, and Jetty marks the last write, so
+ * no completion has to be tracked here.
+ *
+ * The choice is made at the first write. A body known to be under
+ * compression.minBytes (default 1500), such as a single message or account,
+ * is sent as it is; anything larger is compressed as it is written, so
+ * streamed lists are compressed without being buffered whole. The level
+ * defaults to 4, which costs much less CPU than the usual 6 for a slightly
+ * larger body. Bodies that already carry a Content-Encoding, like
+ * MessageController's cached gzip bodies, pass through untouched.
+ *
+ * A compressed response's ETag gets a "--gzip" or "--deflate" suffix, so the
+ * identity and compressed bodies never share a strong validator. Handlers
+ * ignore the suffix when matching If-None-Match, and a 304 answering a
+ * suffixed tag gets the suffix back.
+ *
+ * For each route (method and path, with numeric segments folded into {id})
+ * it counts compressed and skipped responses, bytes before and after, and
+ * the time spent compressing. The compressed bytes collect in memory for each
+ * write before they are passed on, so the time does not include writing to
+ * the client.
+ *
+ * Tuned with -Dsocialmedia.compression.minBytes, .level and .deflate.enabled.
+ */
+public class CompressionFilter implements Filter {
+    /** Smallest response body that is compressed. */
+    public static final int MIN_BYTES = Math.max(0, AppConfig.getInt("compression.minBytes", 1500));
+    /** Deflater level for gzip and deflate, 1 (fastest) to 9 (smallest). */
+    public static final int LEVEL = Math.max(1, Math.min(9, AppConfig.getInt("compression.level", 4)));
+
+    private static final boolean DEFLATE_ENABLED = AppConfig.getBoolean("compression.deflate.enabled", true);
+    // routes tracked individually; the rest share OTHER_ROUTE so odd paths cannot grow the map
+    private static final int MAX_ROUTES = 256;
+    private static final String OTHER_ROUTE = "other";
+
+    private final ConcurrentHashMap<String, RouteCounters> routes = new ConcurrentHashMap<>();
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        Request base = Request.getBaseRequest(request);
+        if (base == null || !(request instanceof HttpServletRequest)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        HttpServletRequest req = (HttpServletRequest) request;
+        ContentCoding coding = ContentCoding.negotiate(req.getHeader("Accept-Encoding"), DEFLATE_ENABLED);
+        if (coding == null || "HEAD".equals(req.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        HttpOutput output = base.getResponse().getHttpOutput();
+        // HttpOutput drops its interceptors when it is recycled for the next request
+        output.setInterceptor(new CompressingInterceptor(output.getInterceptor(), base.getResponse(), coding,
+                req.getHeader("If-None-Match"), countersFor(routeOf(req))));
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * @return a snapshot of the counters for each route, sorted by route
+     */
+    public Map<String, CompressionStats> getStats() {
+        Map<String, CompressionStats> stats = new TreeMap<>();
+        routes.forEach((route, counters) -> stats.put(route, counters.snapshot()));
+        return stats;
+    }
+
+    private RouteCounters countersFor(String route) {
+        RouteCounters counters = routes.get(route);
+        if (counters != null) {
+            return counters;
+        }
+        if (routes.size() >= MAX_ROUTES) {
+            route = OTHER_ROUTE;
+        }
+        return routes.computeIfAbsent(route, key -> new RouteCounters());
+    }
+
+    // e.g. "GET /accounts/{id}/messages"
+    private static String routeOf(HttpServletRequest req) {
+        StringBuilder route = new StringBuilder(req.getMethod()).append(' ');
+        for (String segment : req.getRequestURI().split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            route.append('/').append(isNumber(segment) ? "{id}" : segment);
+        }
+        if (route.charAt(route.length() - 1) == ' ') {
+            route.append('/');
+        }
+        return route.toString();
+    }
+
+    private static boolean isNumber(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if ((c < '0' || c > '9') && !(i == 0 && c == '-' && segment.length() > 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Running totals for one route.
+     */
+    private static class RouteCounters {
+        final LongAdder compressed = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+        final LongAdder bytesIn = new LongAdder();
+        final LongAdder bytesOut = new LongAdder();
+        final LongAdder compressionNanos = new LongAdder();
+
+        CompressionStats snapshot() {
+            return new CompressionStats(compressed.sum(), skipped.sum(), bytesIn.sum(), bytesOut.sum(),
+                    compressionNanos.sum());
+        }
+    }
+
+    /**
+     * Sits in front of the rest of the HttpOutput chain for one response and
+     * compresses the body on its way through. HttpOutput never calls it
+     * concurrently.
+     */
+    private static class CompressingInterceptor implements HttpOutput.Interceptor {
+        private static final int UNDECIDED = 0;
+        private static final int PASSTHROUGH = 1;
+        private static final int COMPRESSING = 2;
+
+        private final HttpOutput.Interceptor next;
+        private final Response response;
+        private final ContentCoding coding;
+        private final String ifNoneMatch;
+        private final RouteCounters counters;
+        private int state = UNDECIDED;
+        // the compressed bytes of the current write, collected before they are passed on
+        private ByteArrayOutputStream sink;
+        private DeflaterOutputStream deflater;
+        private byte[] chunk;
+        private long bytesIn;
+        private long bytesOut;
+        private long compressionNanos;
+
+        CompressingInterceptor(HttpOutput.Interceptor next, Response response, ContentCoding coding,
+                String ifNoneMatch, RouteCounters counters) {
+            this.next = next;
+            this.response = response;
+            this.coding = coding;
+            this.ifNoneMatch = ifNoneMatch;
+            this.counters = counters;
+        }
+
+        @Override
+        public HttpOutput.Interceptor getNextInterceptor() {
+            return next;
+        }
+
+        @Override
+        public void write(ByteBuffer content, boolean last, Callback callback) {
+            if (state == UNDECIDED) {
+                try {
+                    decide(content.remaining(), last);
+                } catch (IOException e) {
+                    callback.failed(e);
+                    return;
+                }
+            }
+            if (state != COMPRESSING || (!content.hasRemaining() && !last)) {
+                next.write(content, last, callback);
+                return;
+            }
+            ByteBuffer compressed;
+            try {
+                compressed = compress(content, last);
+            } catch (IOException e) {
+                callback.failed(e);
+                return;
+            }
+            next.write(compressed, last, callback);
+        }
+
+        /**
+         * Chooses between compressing and passing through, and sets the
+         * headers to match. Runs before anything reaches the connection, so
+         * the headers are not yet committed.
+         *
+         * @param length The length of the first write.
+         * @param last   Whether the first write is the whole body.
+         */
+        private void decide(int length, boolean last) throws IOException {
+            state = PASSTHROUGH;
+            int status = response.getStatus();
+            if (status == 304) {
+                restoreETagSuffix();
+                return;
+            }
+            if (response.isCommitted() || status == 204 || status < 200
+                    || response.getHeader(HttpHeader.CONTENT_ENCODING.asString()) != null) {
+                return;
+            }
+            long size = response.getContentLength() >= 0 ? response.getContentLength()
+                    : last ? length : Long.MAX_VALUE;
+            if (size < MIN_BYTES) {
+                if (size > 0) {
+                    counters.skipped.increment();
+                }
+                return;
+            }
+
+            state = COMPRESSING;
+            response.setHeader(HttpHeader.CONTENT_ENCODING.asString(), coding.getToken());
+            response.getHttpFields().remove(HttpHeader.CONTENT_LENGTH);
+            response.setContentLengthLong(-1);
+            addVary();
+            String etag = response.getHeader(HttpHeader.ETAG.asString());
+            if (etag != null) {
+                response.setHeader(HttpHeader.ETAG.asString(), coding.etag(etag));
+            }
+            sink = new ByteArrayOutputStream(8192);
+            deflater = coding.wrap(sink, LEVEL);
+            chunk = new byte[8192];
+        }
+
+        /**
+         * Compresses one write. A write that is not the last is sync-flushed,
+         * so a streamed body keeps moving; the last one finishes the
+         * compressed data and frees the Deflater.
+         *
+         * @return the compressed bytes to pass on
+         */
+        private ByteBuffer compress(ByteBuffer content, boolean last) throws IOException {
+            long start = System.nanoTime();
+            bytesIn += content.remaining();
+            while (content.hasRemaining()) {
+                int length = Math.min(chunk.length, content.remaining());
+                content.get(chunk, 0, length);
+                deflater.write(chunk, 0, length);
+            }
+            if (last) {
+                deflater.close();
+            } else {
+                deflater.flush();
+            }
+            ByteBuffer compressed = ByteBuffer.wrap(sink.toByteArray());
+            sink.reset();
+            compressionNanos += System.nanoTime() - start;
+            bytesOut += compressed.remaining();
+
+            if (last) {
+                counters.compressed.increment();
+                counters.bytesIn.add(bytesIn);
+                counters.bytesOut.add(bytesOut);
+                counters.compressionNanos.add(compressionNanos);
+            }
+            return compressed;
+        }
+
+        private void addVary() {
+            String vary = response.getHeader(HttpHeader.VARY.asString());
+            if (vary == null || vary.isBlank()) {
+                response.setHeader(HttpHeader.VARY.asString(), "Accept-Encoding");
+            } else if (!vary.toLowerCase(Locale.ROOT).contains("accept-encoding")) {
+                response.setHeader(HttpHeader.VARY.asString(), vary + ", Accept-Encoding");
+            }
+        }
+
+        // the handler matched a suffixed tag without its suffix; answer with the tag the client holds
+        private void restoreETagSuffix() {
+            String etag = response.getHeader(HttpHeader.ETAG.asString());
+            if (etag != null && ifNoneMatch != null && ifNoneMatch.contains(coding.etag(etag))) {
+                response.setHeader(HttpHeader.ETAG.asString(), coding.etag(etag));
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package Controller;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The response compressions the server offers, both built on the JDK's
+ * Deflater so no native library is needed.
+ *
+ * A compressed body is a different representation from the identity one, so
+ * its ETag carries a "--gzip" or "--deflate" suffix, in the form Jetty's own
+ * GzipHandler uses.
+ */
+enum ContentCoding {
+    GZIP("gzip", CompressedContentFormat.GZIP),
+    DEFLATE("deflate", new CompressedContentFormat("deflate", ".zz"));
+
+    private final String token;
+    private final CompressedContentFormat format;
+
+    ContentCoding(String token, CompressedContentFormat format) {
+        this.token = token;
+        this.format = format;
+    }
+
+    /**
+     * @return the Content-Encoding value for this coding
+     */
+    String getToken() {
+        return token;
+    }
+
+    /**
+     * @param etag A quoted entity tag, strong or weak.
+     * @return the tag of the same body compressed with this coding
+     */
+    String etag(String etag) {
+        return format.etag(etag);
+    }
+
+    /**
+     * @param etags An If-None-Match or If-Match value, or one tag from it.
+     * @return the value with every coding's suffix removed from its tags
+     */
+    static String stripETagSuffixes(String etags) {
+        for (ContentCoding coding : values()) {
+            etags = coding.format.stripSuffixes(etags);
+        }
+        return etags;
+    }
+
+    /**
+     * Wraps a stream so bytes written to it come out compressed. Closing the
+     * returned stream finishes the compressed data, frees the Deflater and
+     * closes out. flush() pushes out everything written so far, so a
+     * streamed body keeps moving.
+     *
+     * @param out   The stream that receives the compressed bytes.
+     * @param level Deflater level, 1 (fastest) to 9 (smallest).
+     * @return the compressing stream
+     * @throws IOException if the gzip header cannot be written
+     */
+    DeflaterOutputStream wrap(OutputStream out, int level) throws IOException {
+        int clamped = Math.max(Deflater.BEST_SPEED, Math.min(Deflater.BEST_COMPRESSION, level));
+        return this == GZIP ? new LeveledGzipOutputStream(out, clamped) : new LeveledDeflaterOutputStream(out, clamped);
+    }
+
+    /**
+     * Picks a coding from an Accept-Encoding header: the one with the highest
+     * quality value, gzip on a tie. "*" counts as gzip.
+     *
+     * @param acceptEncoding The request's Accept-Encoding header, possibly null.
+     * @param allowDeflate   Whether deflate may be chosen.
+     * @return the coding to use, or null if the client accepts neither
+     */
+    static ContentCoding negotiate(String acceptEncoding, boolean allowDeflate) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        ContentCoding best = null;
+        double bestQuality = 0;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            ContentCoding coding = name.equals("gzip") || name.equals("x-gzip") || name.equals("*") ? GZIP
+                    : name.equals("deflate") && allowDeflate ? DEFLATE
+                    : null;
+            double quality = qualityOf(parts);
+            if (coding != null && (quality > bestQuality || (quality == bestQuality && coding == GZIP))) {
+                best = coding;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    // the q parameter of one entry; 1 if absent, 0 if malformed
+    private static double qualityOf(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.length() > 2 && (parameter.startsWith("q=") || parameter.startsWith("Q="))) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * GZIPOutputStream with a chosen compression level.
+     */
+    private static class LeveledGzipOutputStream extends GZIPOutputStream {
+        LeveledGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out, 8192, true);
+            def.setLevel(level);
+        }
+    }
+
+    /**
+     * DeflaterOutputStream (zlib format, as the "deflate" coding requires)
+     * with a chosen compression level.
+     */
+    private static class LeveledDeflaterOutputStream extends DeflaterOutputStream {
+        LeveledDeflaterOutputStream(OutputStream out, int level) {
+            super(out, new Deflater(level), 8192, true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                // a Deflater passed in is not freed by DeflaterOutputStream itself
+                def.end();
+            }
+        }
+    }
+}
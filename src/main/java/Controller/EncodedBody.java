@@ -0,0 +1,74 @@
+package Controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * A response body serialized once and kept as bytes, plain and, when it is
+ * large enough to be worth it, gzip-compressed.
+ *
+ * A body that was too large to cache is represented by TOO_LARGE, so callers
+ * remember not to try again and stream it instead.
+ */
+class EncodedBody {
+    static final EncodedBody TOO_LARGE = new EncodedBody(null, null);
+
+    private final byte[] raw;
+    private final byte[] gzip;
+
+    private EncodedBody(byte[] raw, byte[] gzip) {
+        this.raw = raw;
+        this.gzip = gzip;
+    }
+
+    /**
+     * @param raw          The serialized body.
+     * @param minGzipBytes Bodies shorter than this are not compressed.
+     * @param gzipLevel    Deflater level, 1 (fastest) to 9 (smallest).
+     * @return the body with its gzip form, if any
+     */
+    static EncodedBody of(byte[] raw, int minGzipBytes, int gzipLevel) {
+        return new EncodedBody(raw, raw.length >= minGzipBytes ? gzip(raw, gzipLevel) : null);
+    }
+
+    /**
+     * @return false if this is the TOO_LARGE marker
+     */
+    boolean isCached() {
+        return raw != null;
+    }
+
+    /**
+     * @return the uncompressed bytes
+     */
+    byte[] getRaw() {
+        return raw;
+    }
+
+    /**
+     * @return the gzip-compressed bytes, or null if the body was too small to compress
+     */
+    byte[] getGzip() {
+        return gzip;
+    }
+
+    /**
+     * @return approximate heap held by this body, in bytes
+     */
+    long estimateBytes() {
+        return 48 + (raw == null ? 0 : raw.length) + (gzip == null ? 0 : gzip.length);
+    }
+
+    private static byte[] gzip(byte[] raw, int level) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        try (DeflaterOutputStream out = ContentCoding.GZIP.wrap(compressed, level)) {
+            out.write(raw);
+        } catch (IOException e) {
+            // writing to memory does not fail
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+}
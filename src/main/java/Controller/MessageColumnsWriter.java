@@ -0,0 +1,99 @@
+package Controller;
+
+import Model.Message;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a list of messages in the MESSAGE_COLUMNS format: column by column
+ * in blocks of up to BLOCK_ROWS rows, so a client reads each field as one
+ * contiguous run and the writer never holds more than one block.
+ *
+ * All integers are big-endian.
+ * <pre>
+ * body  := block* end
+ * block := int32 rows (greater than 0)
+ *          int32[rows] message_id
+ *          int32[rows] posted_by
+ *          int64[rows] time_posted_epoch
+ *          text[rows]  message_text
+ * text  := int32 length in bytes (-1 for null), then that many bytes of UTF-8
+ * end   := int32 0
+ * </pre>
+ */
+class MessageColumnsWriter {
+    static final int BLOCK_ROWS = 1024;
+
+    private final DataOutputStream out;
+    private final int[] messageIds = new int[BLOCK_ROWS];
+    private final int[] postedBy = new int[BLOCK_ROWS];
+    private final long[] timesPosted = new long[BLOCK_ROWS];
+    private final String[] texts = new String[BLOCK_ROWS];
+    private int rows;
+
+    /**
+     * @param out The stream to write to. It is flushed, not closed, by finish.
+     */
+    MessageColumnsWriter(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 8192));
+    }
+
+    /**
+     * Adds a message, writing out the current block when it is full.
+     *
+     * @param message The next message in the list.
+     * @throws IOException if writing fails
+     */
+    void write(Message message) throws IOException {
+        messageIds[rows] = message.getMessage_id();
+        postedBy[rows] = message.getPosted_by();
+        timesPosted[rows] = message.getTime_posted_epoch();
+        texts[rows] = message.getMessage_text();
+        rows++;
+        if (rows == BLOCK_ROWS) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Writes the last block and the end marker, then flushes.
+     *
+     * @throws IOException if writing fails
+     */
+    void finish() throws IOException {
+        writeBlock();
+        out.writeInt(0);
+        out.flush();
+    }
+
+    private void writeBlock() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+        out.writeInt(rows);
+        for (int i = 0; i < rows; i++) {
+            out.writeInt(messageIds[i]);
+        }
+        for (int i = 0; i < rows; i++) {
+            out.writeInt(postedBy[i]);
+        }
+        for (int i = 0; i < rows; i++) {
+            out.writeLong(timesPosted[i]);
+        }
+        for (int i = 0; i < rows; i++) {
+            if (texts[i] == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] text = texts[i].getBytes(StandardCharsets.UTF_8);
+                out.writeInt(text.length);
+                out.write(text);
+            }
+            texts[i] = null;
+        }
+        rows = 0;
+    }
+}
@@ -1,23 +1,88 @@
 package Controller;
 
-import Service.AccountService;
 import Service.MessageService;
+import DAO.RowHandler;
+import Model.ItemResult;
 import Model.Message;
+import Model.Page;
+import Util.AppConfig;
+import Util.LruCache;
+import Util.MessageJson;
 
 import io.javalin.Javalin;
 import io.javalin.http.Context;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.StringJoiner;
 
 /**
  * This class handles the web endpoints related to message operations.
- * It utilizes both MessageService and AccountService for business logic and data access.
+ * It utilizes MessageService for business logic and data access.
+ *
+ * The GET endpoints send a strong ETag built from MessageService's version
+ * stamp, which changes on every message write. A request whose
+ * If-None-Match already holds the current tag gets 304 straight away, with
+ * no database access and no serialization.
+ *
+ * Full (unpaged) collection responses are also kept as encoded bytes, plain
+ * and gzip-compressed, keyed by path, format and version stamp. A repeat read of an
+ * unchanged collection just copies those bytes to the socket. The gzip copy
+ * goes out under its own "--gzip" ETag. Encoding stops as soon as a body
+ * outgrows cache.responses.maxBodyBytes (default 256 KiB); the collection is
+ * then remembered as too large and streamed, so large collections keep the
+ * constant memory of streaming and no request waits on another's client.
+ *
+ * Writes that carry a session token (see AccountController) act only on the
+ * token's account: posting as another account, or changing or deleting
+ * another account's message, gets 403. Writes without a token are not
+ * checked.
+ *
+ * Bodies are read and written in the format negotiated by WireCodec: JSON by
+ * default, CBOR on request, and for message lists also the MESSAGE_COLUMNS
+ * layout. Each format has its own ETag and its own cached body.
  */
 public class MessageController {
+    // whether unpaged list responses are streamed row by row; -Dsocialmedia.stream.enabled
+    private static final boolean STREAM_LISTS = AppConfig.getBoolean("stream.enabled", true);
+    // most messages accepted by one POST /messages/batch; -Dsocialmedia.batch.maxSize
+    private static final int MAX_BATCH_SIZE = AppConfig.getInt("batch.maxSize", 1000);
+    // most IDs accepted by one GET /messages?ids=...; -Dsocialmedia.multiGet.maxIds
+    private static final int MAX_MULTI_GET_IDS = AppConfig.getInt("multiGet.maxIds", 200);
+    // encoded collection bodies; -Dsocialmedia.cache.responses.*
+    private static final boolean BODY_CACHE_ENABLED = AppConfig.getBoolean("cache.responses.enabled", true);
+    private static final int BODY_CACHE_MAX_ENTRIES = AppConfig.getInt("cache.responses.maxEntries", 64);
+    private static final long BODY_CACHE_MAX_BYTES = AppConfig.getLong("cache.responses.maxBytes", 8L * 1024 * 1024);
+    private static final int BODY_CACHE_MAX_BODY_BYTES = AppConfig.getInt("cache.responses.maxBodyBytes", 256 * 1024);
+    private static final long BODY_CACHE_TTL_MILLIS = AppConfig.getLong("cache.responses.ttlMillis", 300000);
+    // cached bodies are compressed like CompressionFilter compresses live ones unless overridden
+    private static final int GZIP_MIN_BYTES = AppConfig.getInt("cache.responses.gzipMinBytes", CompressionFilter.MIN_BYTES);
+    private static final int GZIP_LEVEL = AppConfig.getInt("cache.responses.gzipLevel", CompressionFilter.LEVEL);
+
+    private final MessageService messageService;
+    private final WireCodec codec;
+    private final LruCache<String, EncodedBody> bodyCache = new LruCache<>(
+            BODY_CACHE_ENABLED ? BODY_CACHE_MAX_ENTRIES : 0, BODY_CACHE_MAX_BYTES, BODY_CACHE_TTL_MILLIS,
+            EncodedBody::estimateBytes);
+    // the version stamp the cached bodies were built for
+    private volatile String bodyCacheStamp;
 
-    private final MessageService messageService = new MessageService();
-    private final AccountService accountService = new AccountService();
+    /**
+     * @param messageService The service shared with the rest of the application.
+     * @param codec          Reads and writes bodies in the negotiated format.
+     */
+    public MessageController(MessageService messageService, WireCodec codec) {
+        this.messageService = messageService;
+        this.codec = codec;
+    }
 
     /**
      * Attaches the routes to the provided Javalin app.
@@ -26,6 +91,7 @@ public class MessageController {
      */
     public void attachRoutes(Javalin app) {
         app.post("/messages", this::handleCreateMessage);
+        app.post("/messages/batch", this::handleCreateMessageBatch);
         app.get("/messages", this::handleGetAllMessages);
         app.get("/messages/{message_id}", this::handleGetMessageById);
         app.delete("/messages/{message_id}", this::handleDeleteMessage);
@@ -39,13 +105,14 @@ public class MessageController {
      * validates it, and if valid, creates a new message in the database.
      * Responds with the newly created message or an error message.
      * 
-     * status codes: 200, 400, 500
+     * status codes: 200, 400, 403, 500
      *
      * @param ctx The context object representing the HTTP request and response.
      */
     private void handleCreateMessage(Context ctx) {
         try {
-            Message message = ctx.bodyAsClass(Message.class);
+            WireFormat format = codec.negotiate(ctx, false);
+            Message message = codec.read(ctx, Message.class);
 
             // check if message_text is valid 
             // if not valid then stop creation return 400
@@ -53,32 +120,117 @@ public class MessageController {
                 ctx.status(400);
                 return;
             }
-            // check if user exists in db before creating message
-            if (accountService.get(message.getPosted_by()).isEmpty()) {
+            if (isOtherAccount(ctx, message.getPosted_by())) {
+                ctx.status(403);
+                return;
+            }
+            // create the message unless its poster does not exist
+            Optional<Message> createdMessage = messageService.createForExistingPoster(message);
+            if (createdMessage.isEmpty()) {
                 ctx.status(400);
                 return;
             }
-
-            // checks passed, create message
-            Message createdMessage = messageService.create(message);
-            ctx.status(200).json(createdMessage);
+            ctx.status(200);
+            codec.write(ctx, format, createdMessage.get());
         } catch (Exception e) {
             ctx.status(500).result("Server error while processing message creation");
         }
     }
 
+    /**
+     * Handles creating many messages in one request.
+     * Parses the request body as a JSON array of messages. Each message is
+     * validated like POST /messages; the valid ones are created together in one
+     * transaction. Responds with one result per input message, in input order,
+     * holding either the created message (with its message_id) or an error.
+     * A request with a session token may only post as the token's account.
+     * 
+     * status codes: 200, 400, 403, 500
+     *
+     * @param ctx The context object representing the HTTP request and response.
+     */
+    private void handleCreateMessageBatch(Context ctx) {
+        WireFormat format = codec.negotiate(ctx, false);
+        Message[] messages;
+        try {
+            messages = codec.read(ctx, Message[].class);
+        } catch (Exception e) {
+            // body is not an array of messages
+            ctx.status(400);
+            return;
+        }
+        if (messages == null || messages.length == 0 || messages.length > MAX_BATCH_SIZE) {
+            ctx.status(400);
+            return;
+        }
+        for (Message message : messages) {
+            if (message != null && isOtherAccount(ctx, message.getPosted_by())) {
+                ctx.status(403);
+                return;
+            }
+        }
+
+        try {
+            List<ItemResult<Message>> results = messageService.createBatch(Arrays.asList(messages));
+            ctx.status(200);
+            codec.write(ctx, format, results);
+        } catch (Exception e) {
+            ctx.status(500).result("Server error while processing batch message creation");
+        }
+    }
+
     /**
      * Handles requests for retrieving all messages.
-     * Responds with a list of all messages from the database or an error message
+     * Responds with a list of all messages from the database or an error message.
+     * The list is streamed to the client as rows are read unless streaming is
+     * switched off. If any of the limit, after_id or before_id query parameters are present,
+     * responds with a single page instead and puts the cursor for the next page
+     * in the X-Next-Cursor header.
+     * If the ids query parameter is present (comma separated, or repeated),
+     * responds with just those messages instead, in the order asked for. IDs
+     * with no message are left out of the list and named in the
+     * X-Missing-Ids header.
      * 
-     * status codes: 200, 500
+     * status codes: 200, 304, 400, 500
      *
      * @param ctx The context object representing the HTTP request and response.
      */
     private void handleGetAllMessages(Context ctx) {
         try {
+            WireFormat format = codec.negotiate(ctx, true);
+            String stamp = messageService.getVersionStamp();
+            String etag = eTagFor(stamp, format);
+            if (respondNotModified(ctx, etag)) {
+                return;
+            }
+            if (ctx.queryParam("ids") != null) {
+                int[] ids = queryParamAsIds(ctx);
+                List<Optional<Message>> found = messageService.getMany(ids);
+                ctx.header("ETag", etag);
+                respondWithMany(ctx, format, ids, found);
+                return;
+            }
+            if (isPageRequest(ctx)) {
+                Page<Message> page = messageService.getPage(
+                        queryParamAsInt(ctx, "after_id"),
+                        queryParamAsInt(ctx, "before_id"),
+                        queryParamAsInt(ctx, "limit"));
+                ctx.header("ETag", etag);
+                respondWithPage(ctx, format, page);
+                return;
+            }
+            ctx.header("ETag", etag);
+            if (respondFromBodyCache(ctx, stamp, etag, format, messageService::streamAll)) {
+                return;
+            }
+            if (STREAM_LISTS) {
+                streamMessages(ctx, format, messageService::streamAll);
+                return;
+            }
             List<Message> messages = messageService.getAll();
-            ctx.status(200).json(messages);
+            respondWithList(ctx, format, messages);
+        } catch (IllegalArgumentException e) {
+            ctx.status(400);
         } catch (Exception e) {
             ctx.status(500).result("Server error while fetching all messages");
         }
@@ -90,16 +242,23 @@ public class MessageController {
      * or a not found/error message if the message does not exist or an issue
      * occurs.
      * 
-     * status codes: 200, 500
+     * status codes: 200, 304, 500
      *
      * @param ctx The context object representing the HTTP request and response.
      */
     private void handleGetMessageById(Context ctx) {
         try {
             int messageId = Integer.parseInt(ctx.pathParam("message_id"));
+            WireFormat format = codec.negotiate(ctx, false);
+            String etag = eTagFor(messageService.getVersionStamp(), format);
+            if (respondNotModified(ctx, etag)) {
+                return;
+            }
             Optional<Message> message = messageService.get(messageId);
+            ctx.header("ETag", etag);
             if (message.isPresent()) {
-                ctx.status(200).json(message.get());
+                ctx.status(200);
+                codec.write(ctx, format, message.get());
             } else {
                 // no message with that id
                 ctx.status(200);
@@ -115,16 +274,22 @@ public class MessageController {
      * no content if the message does not exist,
      * or an error message if an issue occurs.
      * 
-     * status codes: 200, 500
+     * status codes: 200, 403, 500
      *
      * @param ctx The context object representing the HTTP request and response.
      */
     private void handleDeleteMessage(Context ctx) {
         try {
             int messageId = Integer.parseInt(ctx.pathParam("message_id"));
+            WireFormat format = codec.negotiate(ctx, false);
+            if (isOthersMessage(ctx, messageId)) {
+                ctx.status(403);
+                return;
+            }
             Optional<Message> deletedMessage = messageService.delete(messageId);
             if (deletedMessage.isPresent()) {
-                ctx.status(200).json(deletedMessage.get());
+                ctx.status(200);
+                codec.write(ctx, format, deletedMessage.get());
             } else {
                 ctx.status(200); // message doesnt exist in db so we just return status
             }
@@ -139,29 +304,30 @@ public class MessageController {
      * a not found message if the message does not exist,
      * or an error message if an issue occurs.
      * 
-     * status codes: 400, 500
+     * status codes: 400, 403, 500
      *
      * @param ctx The context object representing the HTTP request and response.
      */
     private void handleUpdateMessage(Context ctx) {
         try {
             int messageId = Integer.parseInt(ctx.pathParam("message_id"));
-            Message updatedInfo = ctx.bodyAsClass(Message.class);
+            WireFormat format = codec.negotiate(ctx, false);
+            Message updatedInfo = codec.read(ctx, Message.class);
 
             // if the text is not valid then return 400 and stop update
             if (!messageService.isValidText(updatedInfo)) {
                 ctx.status(400);
                 return;
             }
+            if (isOthersMessage(ctx, messageId)) {
+                ctx.status(403);
+                return;
+            }
 
-            // if the message exists then let's update it, else stop update
-            Optional<Message> existingMessage = messageService.get(messageId);
-            if (existingMessage.isPresent()) {
-                Message messageToUpdate = existingMessage.get();
-                messageToUpdate.setMessage_text(updatedInfo.getMessage_text());
-
-                Message updatedMessage = messageService.update(messageToUpdate);
-                ctx.json(updatedMessage);
+            // update and read back in one statement; empty means no such message
+            Optional<Message> updatedMessage = messageService.updateText(messageId, updatedInfo.getMessage_text());
+            if (updatedMessage.isPresent()) {
+                codec.write(ctx, format, updatedMessage.get());
             } else {
                 // no resource found
                 ctx.status(400);
@@ -174,18 +340,413 @@ public class MessageController {
     /**
      * Handles requests for retrieving all messages posted by a specific user.
      * Responds with a list of messages or an error message if an issue occurs.
+     * The list is streamed like GET /messages. Supports the same limit, after_id and before_id paging parameters as
+     * GET /messages.
      *
-     * status codes: 200, 500
+     * status codes: 200, 304, 400, 500
      * 
      * @param ctx The context object representing the HTTP request and response.
      */
     private void handleGetMessagesByUserId(Context ctx) {
         try {
             int userId = Integer.parseInt(ctx.pathParam("account_id"));
+            WireFormat format = codec.negotiate(ctx, true);
+            String stamp = messageService.getVersionStamp();
+            String etag = eTagFor(stamp, format);
+            if (respondNotModified(ctx, etag)) {
+                return;
+            }
+            if (isPageRequest(ctx)) {
+                Page<Message> page = messageService.getPageByUserId(userId,
+                        queryParamAsInt(ctx, "after_id"),
+                        queryParamAsInt(ctx, "before_id"),
+                        queryParamAsInt(ctx, "limit"));
+                ctx.header("ETag", etag);
+                respondWithPage(ctx, format, page);
+                return;
+            }
+            ctx.header("ETag", etag);
+            MessageSource timeline = handler -> messageService.streamAllByUserId(userId, handler);
+            if (respondFromBodyCache(ctx, stamp, etag, format, timeline)) {
+                return;
+            }
+            if (STREAM_LISTS) {
+                streamMessages(ctx, format, timeline);
+                return;
+            }
             List<Message> messages = messageService.getAllByUserId(userId);
-            ctx.status(200).json(messages);
+            respondWithList(ctx, format, messages);
+        } catch (IllegalArgumentException e) {
+            ctx.status(400);
         } catch (Exception e) {
             ctx.status(500).result("Server error while fetching messages by user ID");
         }
     }
+
+    /**
+     * @param ctx       The context object representing the HTTP request and response.
+     * @param accountId The account the request wants to act as.
+     * @return true if the request carries a session token for a different account
+     */
+    private boolean isOtherAccount(Context ctx, int accountId) {
+        Integer sessionAccountId = ctx.attribute(AccountController.SESSION_ACCOUNT_ID);
+        return sessionAccountId != null && sessionAccountId != accountId;
+    }
+
+    /**
+     * Checks the poster of an existing message against the request's session
+     * token. The poster of a message never changes, so the answer stays true
+     * for the write that follows.
+     *
+     * @param ctx       The context object representing the HTTP request and response.
+     * @param messageId The message the request wants to change.
+     * @return true if the request carries a session token and the message
+     *         exists but was posted by a different account
+     */
+    private boolean isOthersMessage(Context ctx, int messageId) {
+        if (ctx.attribute(AccountController.SESSION_ACCOUNT_ID) == null) {
+            return false;
+        }
+        Optional<Message> message = messageService.get(messageId);
+        return message.isPresent() && isOtherAccount(ctx, message.get().getPosted_by());
+    }
+
+    /**
+     * Builds the strong ETag for a representation. Callers read the version
+     * stamp before any data so the tag can never be newer than the body it is
+     * sent with. Each format gets its own tag, since the bytes differ.
+     *
+     * @param stamp  The message version stamp.
+     * @param format The format of the response.
+     * @return the ETag for every message resource in that format
+     */
+    private String eTagFor(String stamp, WireFormat format) {
+        String suffix = format.getEtagSuffix();
+        return "\"" + stamp + (suffix == null ? "" : "-" + suffix) + "\"";
+    }
+
+    /**
+     * Answers 304 Not Modified if the request's If-None-Match lists the given
+     * ETag (or is "*"). Weak tags are compared by their opaque value, as HTTP
+     * allows for If-None-Match. The "--gzip" or "--deflate" suffix of a
+     * compressed body's tag is ignored, since every encoding of a resource
+     * changes together.
+     *
+     * @param ctx  The context object representing the HTTP request and response.
+     * @param etag The current ETag of the requested resource.
+     * @return true if a 304 was sent and the handler should stop
+     */
+    private boolean respondNotModified(Context ctx, String etag) {
+        String ifNoneMatch = ctx.header("If-None-Match");
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            tag = ContentCoding.stripETagSuffixes(tag);
+            if (tag.equals("*") || tag.equals(etag)) {
+                ctx.header("ETag", etag);
+                ctx.status(304);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param ctx The context object representing the HTTP request and response.
+     * @return true if the request asked for a single page rather than the whole list
+     */
+    private boolean isPageRequest(Context ctx) {
+        return ctx.queryParam("limit") != null
+                || ctx.queryParam("after_id") != null
+                || ctx.queryParam("before_id") != null;
+    }
+
+    /**
+     * Reads the ids query parameter. Each occurrence may hold several IDs
+     * separated by commas.
+     *
+     * @param ctx The context object representing the HTTP request and response.
+     * @return the IDs in the order given, repeats included
+     * @throws IllegalArgumentException if an ID is not an integer, or there
+     *                                  are none or more than the configured maximum
+     */
+    private int[] queryParamAsIds(Context ctx) {
+        List<Integer> ids = new ArrayList<>();
+        for (String value : ctx.queryParams("ids")) {
+            for (String id : value.split(",")) {
+                if (!id.isBlank()) {
+                    ids.add(Integer.valueOf(id.trim()));
+                }
+            }
+            if (ids.size() > MAX_MULTI_GET_IDS) {
+                throw new IllegalArgumentException("at most " + MAX_MULTI_GET_IDS + " ids may be requested");
+            }
+        }
+        if (ids.isEmpty()) {
+            throw new IllegalArgumentException("ids must name at least one message");
+        }
+        int[] result = new int[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the messages that were found as a list, in request order, and
+     * names the IDs that were not in the X-Missing-Ids header.
+     *
+     * @param ctx    The context object representing the HTTP request and response.
+     * @param format The negotiated format.
+     * @param ids    The requested IDs.
+     * @param found  One lookup result per requested ID.
+     * @throws IOException if writing the response fails
+     */
+    private void respondWithMany(Context ctx, WireFormat format, int[] ids, List<Optional<Message>> found)
+            throws IOException {
+        List<Message> messages = new ArrayList<>(ids.length);
+        StringJoiner missing = new StringJoiner(",");
+        for (int i = 0; i < ids.length; i++) {
+            if (found.get(i).isPresent()) {
+                messages.add(found.get(i).get());
+            } else {
+                missing.add(Integer.toString(ids[i]));
+            }
+        }
+        if (missing.length() > 0) {
+            ctx.header("X-Missing-Ids", missing.toString());
+        }
+        respondWithList(ctx, format, messages);
+    }
+
+    /**
+     * Reads an optional integer query parameter.
+     *
+     * @param ctx  The context object representing the HTTP request and response.
+     * @param name The query parameter name.
+     * @return the parsed value, or null if the parameter is absent
+     * @throws NumberFormatException if the parameter is not an integer
+     */
+    private Integer queryParamAsInt(Context ctx, String name) {
+        String value = ctx.queryParam(name);
+        return value == null ? null : Integer.valueOf(value.trim());
+    }
+
+    /**
+     * Writes a page of messages as a list and advertises the next cursor,
+     * if any, in the X-Next-Cursor header.
+     *
+     * @param ctx    The context object representing the HTTP request and response.
+     * @param format The negotiated format.
+     * @param page   The page to send.
+     * @throws IOException if writing the response fails
+     */
+    private void respondWithPage(Context ctx, WireFormat format, Page<Message> page) throws IOException {
+        if (page.getNextCursor() != null) {
+            ctx.header("X-Next-Cursor", String.valueOf(page.getNextCursor()));
+        }
+        respondWithList(ctx, format, page.getItems());
+    }
+
+    /**
+     * Writes a list of messages already in memory.
+     *
+     * @param ctx      The context object representing the HTTP request and response.
+     * @param format   The negotiated format.
+     * @param messages The messages to send.
+     * @throws IOException if writing the response fails
+     */
+    private void respondWithList(Context ctx, WireFormat format, List<Message> messages) throws IOException {
+        ctx.status(200);
+        if (format != WireFormat.MESSAGE_COLUMNS) {
+            codec.write(ctx, format, messages);
+            return;
+        }
+        ctx.contentType(format.getMediaType());
+        writeMessages(ctx.outputStream(), format, handler -> {
+            for (Message message : messages) {
+                handler.handle(message);
+            }
+        });
+    }
+
+    /**
+     * Writes a list of messages straight to the response output stream,
+     * one element per row as the source produces them, so memory use does not
+     * grow with the number of messages.
+     * If the source fails before anything has been sent the exception is
+     * rethrown so the caller can still respond with an error. Once bytes are on
+     * the wire the list is left unterminated, which clients see as a truncated
+     * body.
+     *
+     * @param ctx    The context object representing the HTTP request and response.
+     * @param format The negotiated format.
+     * @param source Produces the messages to write.
+     * @throws IOException if the stream fails before the response is committed
+     */
+    private void streamMessages(Context ctx, WireFormat format, MessageSource source) throws IOException {
+        ctx.status(200).contentType(format.getMediaType());
+        try {
+            writeMessages(ctx.outputStream(), format, source);
+        } catch (IOException | RuntimeException e) {
+            if (!ctx.res().isCommitted()) {
+                throw e;
+            }
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Sends the collection from the encoded body cache, encoding it first on a
+     * miss. Concurrent misses for the same collection share one encoding,
+     * which only ever writes to memory, so no request waits on another's
+     * client. A body too large to cache is remembered as such, and every
+     * request for it streams it instead.
+     *
+     * @param ctx    The context object representing the HTTP request and response.
+     * @param stamp  The version stamp the body must match.
+     * @param etag   The ETag of the body, which also names its format.
+     * @param format The negotiated format.
+     * @param source Produces the messages on a miss.
+     * @return true if the response was sent; false if the cache is off or the
+     *         body is known to be too large to cache and should be streamed
+     * @throws IOException if writing the response fails
+     */
+    private boolean respondFromBodyCache(Context ctx, String stamp, String etag, WireFormat format,
+            MessageSource source) throws IOException {
+        if (!BODY_CACHE_ENABLED) {
+            return false;
+        }
+        if (!stamp.equals(bodyCacheStamp)) {
+            // every cached body is now out of date; free them rather than wait for eviction
+            bodyCache.invalidateAll();
+            bodyCacheStamp = stamp;
+        }
+        EncodedBody body = bodyCache.get(etag + " " + ctx.path(), key -> encode(format, source));
+        if (!body.isCached()) {
+            return false;
+        }
+        byte[] bytes = body.getRaw();
+        ctx.header("Vary", "Accept, Accept-Encoding");
+        if (body.getGzip() != null && acceptsGzip(ctx)) {
+            bytes = body.getGzip();
+            ctx.header("Content-Encoding", "gzip");
+            // the gzip bytes are a different representation, so they get their own validator
+            ctx.header("ETag", ContentCoding.GZIP.etag(etag));
+        }
+        ctx.status(200).contentType(format.getMediaType());
+        ctx.res().setContentLength(bytes.length);
+        // straight to the servlet stream: the bytes are already encoded, and
+        // CompressionFilter passes bodies with a Content-Encoding through as they are
+        ctx.res().getOutputStream().write(bytes);
+        return true;
+    }
+
+    /**
+     * Serializes a collection into an EncodedBody, giving up as soon as it
+     * outgrows the configured maximum so the query is not read to the end.
+     *
+     * @param format The format to encode in.
+     * @param source Produces the messages.
+     * @return the encoded body, or EncodedBody.TOO_LARGE if it exceeds the
+     *         configured maximum body size
+     */
+    private EncodedBody encode(WireFormat format, MessageSource source) {
+        CappedByteArrayOutputStream out = new CappedByteArrayOutputStream(BODY_CACHE_MAX_BODY_BYTES);
+        try {
+            writeMessages(out, format, source);
+        } catch (BodyTooLargeException e) {
+            return EncodedBody.TOO_LARGE;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return EncodedBody.of(out.toByteArray(), GZIP_MIN_BYTES, GZIP_LEVEL);
+    }
+
+    /**
+     * @param ctx The context object representing the HTTP request and response.
+     * @return true if the client accepts gzip-encoded responses
+     */
+    private boolean acceptsGzip(Context ctx) {
+        String acceptEncoding = ctx.header("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    /**
+     * Writes the messages from a source as one list in the given format:
+     * an array for JSON and CBOR, blocks of columns for MESSAGE_COLUMNS.
+     * The output is flushed but not closed.
+     *
+     * @param out    The stream to write to.
+     * @param format The format to write in.
+     * @param source Produces the messages.
+     * @throws IOException if writing fails
+     */
+    private void writeMessages(OutputStream out, WireFormat format, MessageSource source) throws IOException {
+        if (format == WireFormat.MESSAGE_COLUMNS) {
+            MessageColumnsWriter columns = new MessageColumnsWriter(out);
+            source.writeTo(columns::write);
+            columns.finish();
+            return;
+        }
+        JsonGenerator generator = codec.getFactory(format).createGenerator(out);
+        generator.writeStartArray();
+        source.writeTo(message -> MessageJson.write(generator, message));
+        generator.writeEndArray();
+        generator.flush();
+    }
+
+    /**
+     * An in-memory buffer that refuses to grow past a limit.
+     */
+    private static class CappedByteArrayOutputStream extends ByteArrayOutputStream {
+        private final int limit;
+
+        CappedByteArrayOutputStream(int limit) {
+            super(Math.min(limit, 8192));
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) {
+            ensureRoom(1);
+            super.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureRoom(len);
+            super.write(b, off, len);
+        }
+
+        private void ensureRoom(int len) {
+            if (count + len > limit) {
+                throw new BodyTooLargeException();
+            }
+        }
+    }
+
+    /**
+     * Signals that a body outgrew its CappedByteArrayOutputStream.
+     */
+    private static class BodyTooLargeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BodyTooLargeException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * A streaming query that pushes messages into a RowHandler.
+     */
+    @FunctionalInterface
+    private interface MessageSource {
+        void writeTo(RowHandler<Message> handler) throws IOException;
+    }
 }
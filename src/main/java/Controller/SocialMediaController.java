@@ -1,7 +1,22 @@
 package Controller;
 
+import Service.AccountService;
+import Service.MessageService;
+import Util.AppConfig;
+import Util.JsonMappers;
+import Util.MigrationRunner;
+import Util.RateLimiter;
+import Util.SessionStore;
+
 import io.javalin.Javalin;
 import io.javalin.http.Context;
+import io.javalin.json.JavalinJackson;
+import jakarta.servlet.DispatcherType;
+import org.eclipse.jetty.servlet.FilterHolder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.EnumSet;
 
 /**
  * TODO: You will need to write your own endpoints and handlers for your
@@ -20,9 +35,47 @@ public class SocialMediaController {
      *         controller.
      */
     public Javalin startAPI() {
-        Javalin app = Javalin.create();
-        AccountController accountController = new AccountController();
-        MessageController messageController = new MessageController();
+        // bring the schema up to date before serving any requests
+        MigrationRunner.migrate();
+
+        // one mapper per format, with the hand-written model serializers, for every endpoint
+        ObjectMapper objectMapper = JsonMappers.create();
+        CompressionFilter compressionFilter = new CompressionFilter();
+        boolean compressionEnabled = AppConfig.getBoolean("compression.enabled", true);
+        Javalin app = Javalin.create(config -> {
+            config.jsonMapper(new JavalinJackson(objectMapper));
+            // CompressionFilter compresses instead, so the savings can be measured per route
+            config.compression.none();
+            if (compressionEnabled) {
+                config.jetty.contextHandlerConfig(handler -> handler.addFilter(
+                        new FilterHolder(compressionFilter), "/*", EnumSet.of(DispatcherType.REQUEST)));
+            }
+        });
+        // per-route compression counters, off unless asked for; -Dsocialmedia.metrics.enabled
+        if (AppConfig.getBoolean("metrics.enabled", false)) {
+            app.get("/metrics/compression", ctx -> ctx.json(compressionFilter.getStats()));
+        }
+        WireCodec codec = new WireCodec(objectMapper, JsonMappers.createCbor());
+        // one AccountService so its account ID index sees every registration
+        AccountService accountService = new AccountService();
+        MessageService messageService = new MessageService(accountService);
+        SessionStore sessionStore = new SessionStore(
+                AppConfig.getLong("session.ttlMillis", 1800000),
+                AppConfig.getLong("session.sweepIntervalMillis", 60000));
+        app.events(event -> event.serverStopped(sessionStore::close));
+        // login throttling; a capacity of 0 turns a limiter off
+        int throttleMaxKeys = AppConfig.getInt("throttle.login.maxKeys", 100000);
+        RateLimiter addressLoginLimiter = new RateLimiter(
+                AppConfig.getInt("throttle.login.address.capacity", 20),
+                AppConfig.getInt("throttle.login.address.refillPerMinute", 60),
+                throttleMaxKeys);
+        RateLimiter usernameLoginLimiter = new RateLimiter(
+                AppConfig.getInt("throttle.login.username.capacity", 5),
+                AppConfig.getInt("throttle.login.username.refillPerMinute", 5),
+                throttleMaxKeys);
+        AccountController accountController = new AccountController(accountService, codec, sessionStore,
+                addressLoginLimiter, usernameLoginLimiter);
+        MessageController messageController = new MessageController(messageService, codec);
 
         accountController.attachRoutes(app);
         messageController.attachRoutes(app);
@@ -0,0 +1,83 @@
+package Controller;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.javalin.http.Context;
+
+import java.io.IOException;
+
+/**
+ * Reads request bodies and writes responses in the format the client asked
+ * for. Holds the JSON and CBOR mappers built at startup so every controller
+ * shares them.
+ *
+ * JSON goes through Javalin's own json methods, which use the same JSON
+ * mapper, so JSON requests and responses behave exactly as before.
+ */
+public class WireCodec {
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper cborMapper;
+
+    /**
+     * @param jsonMapper The mapper Javalin was configured with.
+     * @param cborMapper A CBOR mapper with the same serializers.
+     */
+    public WireCodec(ObjectMapper jsonMapper, ObjectMapper cborMapper) {
+        this.jsonMapper = jsonMapper;
+        this.cborMapper = cborMapper;
+    }
+
+    /**
+     * Reads the request body in the format named by its Content-Type.
+     *
+     * @param ctx  The context object representing the HTTP request and response.
+     * @param type The class to read the body as.
+     * @return the parsed body
+     * @throws IOException if a CBOR body cannot be parsed
+     */
+    public <T> T read(Context ctx, Class<T> type) throws IOException {
+        if (WireFormat.forContentType(ctx.contentType()) == WireFormat.CBOR) {
+            return cborMapper.readValue(ctx.bodyAsBytes(), type);
+        }
+        return ctx.bodyAsClass(type);
+    }
+
+    /**
+     * Chooses the response format from the Accept header and marks the
+     * response as varying by it, so caches keep the formats apart.
+     *
+     * @param ctx         The context object representing the HTTP request and response.
+     * @param messageList Whether the response is a list of messages.
+     * @return the format to respond with
+     */
+    public WireFormat negotiate(Context ctx, boolean messageList) {
+        ctx.header("Vary", "Accept");
+        return WireFormat.forAccept(ctx.header("Accept"), messageList);
+    }
+
+    /**
+     * Writes a value as the response body. MESSAGE_COLUMNS bodies are written
+     * by MessageController itself, so a value is never sent in that format.
+     *
+     * @param ctx    The context object representing the HTTP request and response.
+     * @param format The negotiated format.
+     * @param value  The value to send.
+     * @throws IOException if the value cannot be encoded as CBOR
+     */
+    public void write(Context ctx, WireFormat format, Object value) throws IOException {
+        if (format == WireFormat.CBOR) {
+            ctx.contentType(format.getMediaType()).result(cborMapper.writeValueAsBytes(value));
+            return;
+        }
+        ctx.json(value);
+    }
+
+    /**
+     * @param format JSON or CBOR.
+     * @return the factory for streaming generators in that format
+     */
+    public JsonFactory getFactory(WireFormat format) {
+        return format == WireFormat.CBOR ? cborMapper.getFactory() : jsonMapper.getFactory();
+    }
+}
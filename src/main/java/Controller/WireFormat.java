@@ -0,0 +1,117 @@
+package Controller;
+
+import java.util.Locale;
+
+/**
+ * The encodings the API can read and write.
+ *
+ * JSON is the default. CBOR carries the same structure as the JSON body in a
+ * compact binary form. MESSAGE_COLUMNS is only offered for lists of messages;
+ * see MessageColumnsWriter for its layout.
+ */
+public enum WireFormat {
+    JSON("application/json", null),
+    CBOR("application/cbor", "cbor"),
+    MESSAGE_COLUMNS("application/vnd.socialmedia.message-columns", "columns");
+
+    private final String mediaType;
+    private final String etagSuffix;
+
+    WireFormat(String mediaType, String etagSuffix) {
+        this.mediaType = mediaType;
+        this.etagSuffix = etagSuffix;
+    }
+
+    /**
+     * @return the Content-Type of a body in this format
+     */
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * @return what is appended to an ETag so each format has its own tag, or
+     *         null for JSON, whose tags carry no suffix
+     */
+    public String getEtagSuffix() {
+        return etagSuffix;
+    }
+
+    /**
+     * Picks the format a request body is in from its Content-Type. Anything
+     * other than CBOR is read as JSON.
+     *
+     * @param contentType The request's Content-Type header, possibly null.
+     * @return the format to read the body with
+     */
+    public static WireFormat forContentType(String contentType) {
+        return CBOR.mediaType.equals(mediaTypeOf(contentType)) ? CBOR : JSON;
+    }
+
+    /**
+     * Picks the response format from an Accept header: the supported type
+     * with the highest quality value, the earliest listed on a tie. Wildcards
+     * and headers naming nothing supported get JSON.
+     *
+     * @param accept       The request's Accept header, possibly null.
+     * @param messageList  Whether the response is a list of messages, the only
+     *                     body MESSAGE_COLUMNS can carry.
+     * @return the format to respond with
+     */
+    public static WireFormat forAccept(String accept, boolean messageList) {
+        if (accept == null) {
+            return JSON;
+        }
+        WireFormat best = JSON;
+        double bestQuality = 0;
+        for (String range : accept.split(",")) {
+            WireFormat format = match(mediaTypeOf(range), messageList);
+            double quality = qualityOf(range);
+            if (format != null && quality > bestQuality) {
+                best = format;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    private static WireFormat match(String mediaType, boolean messageList) {
+        switch (mediaType) {
+            case "application/json":
+            case "application/*":
+            case "*/*":
+                return JSON;
+            case "application/cbor":
+                return CBOR;
+            case "application/vnd.socialmedia.message-columns":
+                return messageList ? MESSAGE_COLUMNS : null;
+            default:
+                return null;
+        }
+    }
+
+    // the type and subtype, lower case, without parameters
+    private static String mediaTypeOf(String header) {
+        if (header == null) {
+            return "";
+        }
+        int semicolon = header.indexOf(';');
+        return (semicolon < 0 ? header : header.substring(0, semicolon)).trim().toLowerCase(Locale.ROOT);
+    }
+
+    // the q parameter of one media range; 1 if absent, 0 if malformed
+    private static double qualityOf(String range) {
+        String[] parameters = range.split(";");
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (parameter.length() > 2 && (parameter.startsWith("q=") || parameter.startsWith("Q="))) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -3,21 +3,28 @@ package DAO;
 import Model.Account;
 import Util.ConnectionUtil;
 
+import java.sql.Array;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
-import org.mindrot.jbcrypt.BCrypt;
+import org.h2.api.ErrorCode;
 
 /* 
  * Implementation of DaoInterface for Account model.
  * Follows DaoInterface method implementation PLUS:
  * public Optional<Account> findByUsername(String username)
+ * public List<Integer> getAllIds()
  * 
 */
 public class AccountDao implements DaoInterface<Account> {
@@ -25,8 +32,13 @@ public class AccountDao implements DaoInterface<Account> {
     /**
      * Creates a new Account in the database.
      * 
-     * @param account Account object to be created.
+     * Uniqueness of the username is enforced by the database, so concurrent
+     * registrations of the same name cannot both succeed.
+     * 
+     * @param account Account object to be created. Its password must already
+     *                be hashed; it is stored as given.
      * @return The created Account object with its generated ID.
+     * @throws UsernameTakenException if another Account already has the username
      */
     @Override
     public Account create(Account account) {
@@ -39,10 +51,8 @@ public class AccountDao implements DaoInterface<Account> {
             conn = ConnectionUtil.getConnection();
             pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
 
-            String hashedPassword = BCrypt.hashpw(account.getPassword(), BCrypt.gensalt());
-
             pstmt.setString(1, account.getUsername());
-            pstmt.setString(2, hashedPassword);
+            pstmt.setString(2, account.getPassword());
             pstmt.executeUpdate();
 
             // Retrieve the auto-generated keys (primary keys) created by the database
@@ -60,6 +70,9 @@ public class AccountDao implements DaoInterface<Account> {
                 throw new SQLException("Creating account failed, no ID obtained.");
             }
         } catch (SQLException e) {
+            if (isDuplicateKey(e)) {
+                throw new UsernameTakenException(account.getUsername(), e);
+            }
             e.printStackTrace(); // Handle exception
         } finally {
             if (generatedKeys != null)
@@ -84,11 +97,93 @@ public class AccountDao implements DaoInterface<Account> {
         return account;
     }
 
+    /**
+     * Creates several Accounts with one JDBC batch inside a single transaction.
+     * Either every account is stored or, if any insert fails, none are.
+     *
+     * @param accounts Account objects to be created. Their passwords must
+     *                 already be hashed; they are stored as given.
+     * @return The same Account objects, in the same order, with their generated IDs.
+     * @throws UsernameTakenException if a username is already in use or
+     *                                appears twice; nothing is stored
+     * @throws RuntimeException if the batch fails for another reason and has
+     *                          been rolled back
+     */
+    @Override
+    public List<Account> createAll(List<Account> accounts) {
+        if (accounts.isEmpty()) {
+            return accounts;
+        }
+        String sql = "INSERT INTO Account (username, password) VALUES (?, ?)";
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet generatedKeys = null;
+
+        try {
+            conn = ConnectionUtil.getConnection();
+            conn.setAutoCommit(false);
+            pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+
+            for (Account account : accounts) {
+                pstmt.setString(1, account.getUsername());
+                pstmt.setString(2, account.getPassword());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+
+            // keys come back in the order the rows were added to the batch
+            generatedKeys = pstmt.getGeneratedKeys();
+            int index = 0;
+            while (generatedKeys.next() && index < accounts.size()) {
+                accounts.get(index++).setAccount_id(generatedKeys.getInt(1));
+            }
+            if (index != accounts.size()) {
+                throw new SQLException("Creating accounts failed, expected " + accounts.size()
+                        + " IDs but obtained " + index + ".");
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            if (conn != null)
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                }
+            if (isDuplicateKey(e)) {
+                throw new UsernameTakenException(failedUsername(accounts, e), e);
+            }
+            throw new RuntimeException("Error accessing database", e);
+        } finally {
+            if (generatedKeys != null)
+                try {
+                    generatedKeys.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            if (pstmt != null)
+                try {
+                    pstmt.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            if (conn != null)
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+        }
+        return accounts;
+    }
+
     /**
      * Updates an existing Account in the database.
      * 
-     * @param account Account object to be updated.
+     * @param account Account object to be updated. Its password must already
+     *                be hashed; it is stored as given.
      * @return The updated Account object.
+     * @throws UsernameTakenException if another Account already has the new username
      */
     @Override
     public Account update(Account account) {
@@ -100,14 +195,15 @@ public class AccountDao implements DaoInterface<Account> {
             conn = ConnectionUtil.getConnection();
             pstmt = conn.prepareStatement(sql);
 
-            String hashedPassword = BCrypt.hashpw(account.getPassword(), BCrypt.gensalt());
-
             pstmt.setString(1, account.getUsername());
-            pstmt.setString(2, hashedPassword);
+            pstmt.setString(2, account.getPassword());
             pstmt.setInt(3, account.getAccount_id());
             pstmt.executeUpdate();
 
         } catch (SQLException e) {
+            if (isDuplicateKey(e)) {
+                throw new UsernameTakenException(account.getUsername(), e);
+            }
             e.printStackTrace(); // Handle exception
         } finally {
             if (pstmt != null)
@@ -126,36 +222,123 @@ public class AccountDao implements DaoInterface<Account> {
         return account;
     }
 
+    /**
+     * Updates several Accounts with one JDBC batch inside a single transaction.
+     * Either every update is applied or, if any fails, none are.
+     *
+     * @param accounts Account objects to be updated. Their passwords must
+     *                 already be hashed; they are stored as given.
+     * @return One Optional per input Account, in input order, holding the
+     *         Account as given or empty if no row has its ID.
+     * @throws UsernameTakenException if a new username is already in use;
+     *                                nothing is updated
+     * @throws RuntimeException if the batch fails for another reason and has
+     *                          been rolled back
+     */
+    @Override
+    public List<Optional<Account>> updateAll(List<Account> accounts) {
+        List<Optional<Account>> results = new ArrayList<>(accounts.size());
+        if (accounts.isEmpty()) {
+            return results;
+        }
+        String sql = "UPDATE Account SET username = ?, password = ? WHERE account_id = ?";
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+
+        try {
+            conn = ConnectionUtil.getConnection();
+            conn.setAutoCommit(false);
+            pstmt = conn.prepareStatement(sql);
+
+            for (Account account : accounts) {
+                pstmt.setString(1, account.getUsername());
+                pstmt.setString(2, account.getPassword());
+                pstmt.setInt(3, account.getAccount_id());
+                pstmt.addBatch();
+            }
+            int[] updateCounts = pstmt.executeBatch();
+            conn.commit();
+
+            for (int i = 0; i < accounts.size(); i++) {
+                results.add(updateCounts[i] > 0 ? Optional.of(accounts.get(i)) : Optional.empty());
+            }
+        } catch (SQLException e) {
+            if (conn != null)
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                }
+            if (isDuplicateKey(e)) {
+                throw new UsernameTakenException(failedUsername(accounts, e), e);
+            }
+            throw new RuntimeException("Error accessing database", e);
+        } finally {
+            if (pstmt != null)
+                try {
+                    pstmt.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            if (conn != null)
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+        }
+        return results;
+    }
+
     /**
      * Deletes an Account from the database by its ID.
      * 
      * @param id The ID of the Account to be deleted.
      * @return An Optional containing the deleted Account or empty if not found.
+     * @throws RuntimeException if the delete fails, for example because the
+     *                          account still has messages; nothing is deleted
      */
     @Override
     public Optional<Account> delete(int id) {
-        Optional<Account> accountToDelete = get(id);
-        if (accountToDelete == null) {
-            return Optional.empty();
-        }
-
-        String sql = "DELETE FROM Account WHERE account_id = ?";
+        // OLD TABLE returns the row as it was before the delete, so the read and
+        // the delete happen atomically in one round trip
+        String sql = "SELECT * FROM OLD TABLE (DELETE FROM Account WHERE account_id = ?)";
         Connection conn = null;
         PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        Optional<Account> deleted = Optional.empty();
 
         try {
             conn = ConnectionUtil.getConnection();
+            // explicit, because a failed OLD TABLE delete is not undone in auto-commit mode
+            conn.setAutoCommit(false);
             pstmt = conn.prepareStatement(sql);
 
             pstmt.setInt(1, id);
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows == 0) {
-                return Optional.empty(); // No rows affected, message was not deleted
+            rs = pstmt.executeQuery();
+            if (rs.next()) {
+                deleted = Optional.of(new Account(
+                        rs.getInt("account_id"),
+                        rs.getString("username"),
+                        rs.getString("password")));
             }
+            conn.commit();
         } catch (SQLException e) {
-            e.printStackTrace(); // Handle exception
-            return Optional.empty();
+            if (conn != null)
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                }
+            throw new RuntimeException("Error accessing database", e);
         } finally {
+            if (rs != null)
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
             if (pstmt != null)
                 try {
                     pstmt.close();
@@ -164,13 +347,60 @@ public class AccountDao implements DaoInterface<Account> {
                 }
             if (conn != null)
                 try {
+                    conn.setAutoCommit(true);
                     conn.close();
                 } catch (SQLException e) {
                     e.printStackTrace();
                 }
         }
+        // empty if no row matched, so nothing was deleted
+        return deleted;
+    }
+
+    /**
+     * Deletes several Accounts by their IDs with a single statement inside
+     * one transaction. As with delete, OLD TABLE returns the deleted rows in
+     * the same round trip.
+     *
+     * @param ids The IDs of the Accounts to be deleted; may contain repeats.
+     * @return One Optional per requested ID, in request order, holding the
+     *         deleted Account or empty if not found.
+     * @throws RuntimeException if the delete fails, for example because an
+     *                          account still has messages
+     */
+    @Override
+    public List<Optional<Account>> deleteAll(int[] ids) {
+        Map<Integer, Account> deleted = Collections.emptyMap();
+        if (ids.length == 0) {
+            return inRequestOrder(ids, deleted);
+        }
+        String sql = "SELECT * FROM OLD TABLE (DELETE FROM Account WHERE account_id = ANY(?))";
+        Connection conn = null;
 
-        return accountToDelete;
+        try {
+            conn = ConnectionUtil.getConnection();
+            // explicit, because a failed OLD TABLE delete is not undone in auto-commit mode
+            conn.setAutoCommit(false);
+            deleted = queryByIds(conn, sql, ids);
+            conn.commit();
+        } catch (SQLException e) {
+            if (conn != null)
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                }
+            throw new RuntimeException("Error accessing database", e);
+        } finally {
+            if (conn != null)
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+        }
+        return inRequestOrder(ids, deleted);
     }
 
     /**
@@ -223,6 +453,40 @@ public class AccountDao implements DaoInterface<Account> {
         return Optional.empty();
     }
 
+    /**
+     * Retrieves many Accounts by their IDs in one query, binding the IDs as a
+     * single array parameter.
+     *
+     * @param ids The IDs of the Accounts to be retrieved; may contain repeats.
+     * @return One Optional per requested ID, in request order, holding the
+     *         found Account or empty if not found.
+     * @throws RuntimeException if the query fails
+     */
+    @Override
+    public List<Optional<Account>> getMany(int[] ids) {
+        Map<Integer, Account> found = Collections.emptyMap();
+        if (ids.length == 0) {
+            return inRequestOrder(ids, found);
+        }
+        String sql = "SELECT * FROM Account WHERE account_id = ANY(?)";
+        Connection conn = null;
+
+        try {
+            conn = ConnectionUtil.getConnection();
+            found = queryByIds(conn, sql, ids);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error accessing database", e);
+        } finally {
+            if (conn != null)
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+        }
+        return inRequestOrder(ids, found);
+    }
+
     /**
      * Retrieves all Accounts from the database.
      * 
@@ -320,4 +584,134 @@ public class AccountDao implements DaoInterface<Account> {
         return Optional.empty();
     }
 
+    /**
+     * Retrieves the ID of every Account without loading the rest of the rows.
+     *
+     * @return A List of all account IDs.
+     */
+    public List<Integer> getAllIds() {
+        List<Integer> ids = new ArrayList<>();
+        String sql = "SELECT account_id FROM Account";
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = ConnectionUtil.getConnection();
+            pstmt = conn.prepareStatement(sql);
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                ids.add(rs.getInt("account_id"));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error accessing database", e);
+        } finally {
+            if (rs != null)
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            if (pstmt != null)
+                try {
+                    pstmt.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            if (conn != null)
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+        }
+        return ids;
+    }
+
+    /**
+     * @param e The exception raised by the database.
+     * @return true if it reports a UNIQUE constraint violation
+     */
+    private boolean isDuplicateKey(SQLException e) {
+        return e.getErrorCode() == ErrorCode.DUPLICATE_KEY_1 || "23505".equals(e.getSQLState());
+    }
+
+    /**
+     * @param accounts The accounts a batch was built from.
+     * @param e        The failure the batch raised.
+     * @return the username of the first account whose statement failed, or
+     *         null if the driver did not say which one it was
+     */
+    private String failedUsername(List<Account> accounts, SQLException e) {
+        if (e instanceof BatchUpdateException) {
+            int[] updateCounts = ((BatchUpdateException) e).getUpdateCounts();
+            for (int i = 0; updateCounts != null && i < updateCounts.length && i < accounts.size(); i++) {
+                if (updateCounts[i] == Statement.EXECUTE_FAILED) {
+                    return accounts.get(i).getUsername();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs a query that returns Account rows, binding the IDs as its one array
+     * parameter.
+     *
+     * @param conn The connection to run the query on; it is not closed.
+     * @param sql  A statement with a single "= ANY(?)" parameter.
+     * @param ids  The IDs to bind.
+     * @return the returned rows, keyed by account_id
+     * @throws SQLException if the query fails
+     */
+    private Map<Integer, Account> queryByIds(Connection conn, String sql, int[] ids) throws SQLException {
+        Map<Integer, Account> accounts = new HashMap<>();
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        Array idArray = null;
+
+        try {
+            pstmt = conn.prepareStatement(sql);
+
+            idArray = conn.createArrayOf("INTEGER", Arrays.stream(ids).boxed().toArray());
+            pstmt.setArray(1, idArray);
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                Account account = new Account(
+                        rs.getInt("account_id"),
+                        rs.getString("username"),
+                        rs.getString("password"));
+                accounts.put(account.getAccount_id(), account);
+            }
+        } finally {
+            if (rs != null)
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            if (idArray != null)
+                try {
+                    idArray.free();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            if (pstmt != null)
+                try {
+                    pstmt.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+        }
+        return accounts;
+    }
+
+    private static List<Optional<Account>> inRequestOrder(int[] ids, Map<Integer, Account> accounts) {
+        List<Optional<Account>> results = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            results.add(Optional.ofNullable(accounts.get(id)));
+        }
+        return results;
+    }
+
 }
@@ -23,4 +23,21 @@ public interface DaoInterface<T> {
     // Returns the deleted resource, or null if no resource found
     // because null possible, we use optional
     Optional<T> delete(int id);
+
+    // Batch versions of the above. Each runs as one transaction and makes a
+    // single round trip per statement, with IDs bound as one array parameter.
+
+    // one Optional per requested id, in request order; ids may repeat
+    List<Optional<T>> getMany(int[] ids);
+
+    // the given objects, in the same order, with their generated IDs;
+    // if any insert fails none are stored
+    List<T> createAll(List<T> ts);
+
+    // one Optional per object, in input order, empty if no row has its ID
+    List<Optional<T>> updateAll(List<T> ts);
+
+    // one Optional per requested id, in request order, holding the deleted
+    // resource or empty if none was found
+    List<Optional<T>> deleteAll(int[] ids);
 }
\ No newline at end of file
@@ -0,0 +1,190 @@
+package DAO;
+
+import Model.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind queue that groups concurrent message inserts into shared
+ * transactions.
+ *
+ * Callers submit a message and get a future. A single writer thread takes the
+ * first waiting message, keeps collecting until it has maxBatchSize messages
+ * or maxLingerMillis has passed, and writes them all with one multi-row batch
+ * in one transaction, so many inserts share the cost of one commit. If the
+ * batch fails, the writer retries its messages one at a time so a single bad
+ * row only fails its own caller.
+ *
+ * With a linger of 0 the writer never waits: whatever queued up while the
+ * previous batch was being written goes into the next one.
+ *
+ * Anything thrown while writing a batch, Errors included, fails that batch's
+ * callers and the writer carries on with the next one. A caller that gives up
+ * may cancel its future; a message still queued is then dropped, though one
+ * already in a batch being written may still commit. After shutdown every
+ * waiting and later submit fails instead of waiting for a writer that is gone.
+ */
+class GroupCommitQueue {
+    // queued by shutdown to wake the writer; interrupting it could land inside JDBC
+    private static final PendingInsert STOP = new PendingInsert(null);
+
+    private final MessageDao messageDao;
+    private final int maxBatchSize;
+    private final long maxLingerNanos;
+    private final BlockingQueue<PendingInsert> queue;
+    private final Thread writer;
+    private volatile boolean shutdown;
+
+    /**
+     * Creates the queue and starts its writer thread.
+     *
+     * @param messageDao      Used to write each batch with createAll.
+     * @param maxBatchSize    Most messages written in one transaction.
+     * @param maxLingerMillis Longest the writer waits for a batch to fill.
+     * @param capacity        Most messages waiting at once; submitters block beyond it.
+     */
+    GroupCommitQueue(MessageDao messageDao, int maxBatchSize, long maxLingerMillis, int capacity) {
+        this.messageDao = messageDao;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+        this.queue = new ArrayBlockingQueue<>(Math.max(capacity, this.maxBatchSize));
+
+        writer = new Thread(this::writeLoop, "message-group-commit");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a message for insertion.
+     *
+     * @param message The Message to be created. It is not modified.
+     * @return a future that completes with the generated message_id once the
+     *         batch holding the message has committed, or exceptionally if
+     *         it could not be written or the queue has been shut down
+     */
+    CompletableFuture<Integer> submit(Message message) {
+        PendingInsert pending = new PendingInsert(message);
+        if (shutdown) {
+            pending.future.completeExceptionally(new IllegalStateException("Group commit queue is shut down"));
+            return pending.future;
+        }
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.future.completeExceptionally(e);
+        }
+        if (shutdown) {
+            // the writer may already have drained the queue for the last time
+            failQueued();
+        }
+        return pending.future;
+    }
+
+    /**
+     * Stops the writer. The batch it is writing finishes or fails as usual;
+     * every message still queued, and every later submit, fails.
+     */
+    void shutdown() {
+        shutdown = true;
+        // a full queue means the writer is busy and sees the flag before its next take
+        queue.offer(STOP);
+    }
+
+    private void writeLoop() {
+        List<PendingInsert> batch = new ArrayList<>(maxBatchSize);
+        while (true) {
+            try {
+                if (shutdown) {
+                    break;
+                }
+                PendingInsert first = queue.take();
+                if (first == STOP) {
+                    break;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxLingerNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingInsert next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                // callers that cancelled while queued no longer want their rows
+                batch.removeIf(pending -> pending == STOP || pending.future.isDone());
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+            } catch (InterruptedException e) {
+                shutdown = true;
+                for (PendingInsert pending : batch) {
+                    pending.future.completeExceptionally(e);
+                }
+            } catch (Throwable e) {
+                // never let one bad batch kill the writer, or every later create would wait on nothing
+                for (PendingInsert pending : batch) {
+                    pending.future.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+        failQueued();
+    }
+
+    private void failQueued() {
+        IllegalStateException failure = new IllegalStateException("Group commit queue is shut down");
+        PendingInsert pending;
+        while ((pending = queue.poll()) != null) {
+            if (pending != STOP) {
+                pending.future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private void flush(List<PendingInsert> batch) {
+        List<Message> rows = new ArrayList<>(batch.size());
+        for (PendingInsert pending : batch) {
+            rows.add(pending.row);
+        }
+        try {
+            messageDao.createAll(rows);
+            for (PendingInsert pending : batch) {
+                pending.future.complete(pending.row.getMessage_id());
+            }
+        } catch (RuntimeException batchFailure) {
+            for (PendingInsert pending : batch) {
+                try {
+                    messageDao.createAll(List.of(pending.row));
+                    pending.future.complete(pending.row.getMessage_id());
+                } catch (RuntimeException e) {
+                    pending.future.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A queued insert: a private copy of the caller's message and the future
+     * the caller is waiting on.
+     */
+    private static class PendingInsert {
+        final Message row;
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        PendingInsert(Message message) {
+            this.row = message == null ? null : new Message(message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
+        }
+    }
+}
@@ -1,8 +1,15 @@
 package DAO;
 
 import Model.Message;
+import Model.Page;
+import Util.AppConfig;
 import Util.ConnectionUtil;
+import Util.UnitOfWork;
 
+import org.h2.api.ErrorCode;
+
+import java.io.IOException;
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -10,23 +17,60 @@ import java.sql.SQLException;
 import java.sql.Statement;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /* 
  * Implementation of DaoInterface for Message model PLUS:
  *     public List<Message> getAllByUserId(int id)
+ *     public Page<Message> getPage(Integer afterId, Integer beforeId, int limit)
+ *     public Page<Message> getPageByUserId(int id, Integer afterId, Integer beforeId, int limit)
+ *     public void streamAll(RowHandler<Message> handler)
+ *     public void streamAllByUserId(int id, RowHandler<Message> handler)
+ *     public Optional<Message> updateText(int id, String text)
 */
 public class MessageDao implements DaoInterface<Message> {
+    // rows fetched per round trip when streaming; -Dsocialmedia.stream.fetchSize
+    private static final int STREAM_FETCH_SIZE = AppConfig.getInt("stream.fetchSize", 500);
+    // optional write-behind queue that groups concurrent inserts into shared commits;
+    // -Dsocialmedia.groupCommit.enabled=true plus .maxBatchSize, .maxLingerMillis, .queueCapacity, .timeoutMillis
+    private static final GroupCommitQueue GROUP_COMMIT = AppConfig.getBoolean("groupCommit.enabled", false)
+            ? new GroupCommitQueue(new MessageDao(),
+                    AppConfig.getInt("groupCommit.maxBatchSize", 256),
+                    AppConfig.getLong("groupCommit.maxLingerMillis", 0),
+                    AppConfig.getInt("groupCommit.queueCapacity", 10000))
+            : null;
+    // longest create waits for its queued insert to commit
+    private static final long GROUP_COMMIT_TIMEOUT_MILLIS = AppConfig.getLong("groupCommit.timeoutMillis", 30000);
 
     /**
      * Creates a new Message in the database.
+     * When group commit is enabled the insert is queued and written together
+     * with other concurrent inserts in one transaction; this call still waits
+     * until the row has committed, for at most groupCommit.timeoutMillis
+     * (default 30 s).
      *
      * @param message The Message object to be created.
      * @return The Message object with its generated ID.
+     * @throws UnknownPosterException if posted_by does not refer to an existing Account
+     * @throws RuntimeException if a queued insert fails or does not commit in time
      */
     @Override
     public Message create(Message message) {
+        // a caller inside a transaction needs the row written on its own connection
+        if (GROUP_COMMIT != null && !UnitOfWork.isTransactionActive()) {
+            message.setMessage_id(awaitGroupCommit(GROUP_COMMIT.submit(message), message));
+            return message;
+        }
+
         String sql = "INSERT INTO Message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)";
         Connection conn = null;
         PreparedStatement pstmt = null;
@@ -56,6 +100,9 @@ public class MessageDao implements DaoInterface<Message> {
                 throw new SQLException("Creating message failed, no ID obtained.");
             }
         } catch (SQLException e) {
+            if (isMissingPoster(e)) {
+                throw new UnknownPosterException(message.getPosted_by(), e);
+            }
             e.printStackTrace();
             // Handle exception
         } finally {
@@ -81,28 +128,221 @@ public class MessageDao implements DaoInterface<Message> {
         return message;
     }
 
+    /**
+     * Waits for a queued insert and turns its failure into the exception a
+     * direct insert would have thrown.
+     *
+     * @return the generated message_id
+     */
+    private int awaitGroupCommit(CompletableFuture<Integer> pending, Message message) {
+        try {
+            return pending.get(GROUP_COMMIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // drops the insert if it is still queued; if it completed meanwhile, use the outcome
+            if (pending.cancel(false)) {
+                throw new RuntimeException("Timed out waiting for group commit", e);
+            }
+            return awaitGroupCommit(pending, message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.cancel(false);
+            throw new RuntimeException("Interrupted waiting for group commit", e);
+        } catch (ExecutionException e) {
+            if (isMissingPoster(e.getCause())) {
+                throw new UnknownPosterException(message.getPosted_by(), e.getCause());
+            }
+            throw new RuntimeException("Error accessing database", e.getCause());
+        }
+    }
+
+    /**
+     * Creates several Messages with one JDBC batch inside a single transaction.
+     * Either every message is stored or, if any insert fails, none are.
+     *
+     * @param messages The Message objects to be created.
+     * @return The same Message objects, in the same order, with their generated IDs.
+     * @throws RuntimeException if the batch fails and has been rolled back
+     */
+    @Override
+    public List<Message> createAll(List<Message> messages) {
+        String sql = "INSERT INTO Message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)";
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet generatedKeys = null;
+
+        try {
+            conn = ConnectionUtil.getConnection();
+            conn.setAutoCommit(false);
+            pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+
+            for (Message message : messages) {
+                pstmt.setInt(1, message.getPosted_by());
+                pstmt.setString(2, message.getMessage_text());
+                pstmt.setLong(3, message.getTime_posted_epoch());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+
+            // keys come back in the order the rows were added to the batch
+            generatedKeys = pstmt.getGeneratedKeys();
+            int index = 0;
+            while (generatedKeys.next() && index < messages.size()) {
+                messages.get(index++).setMessage_id(generatedKeys.getInt(1));
+            }
+            if (index != messages.size()) {
+                throw new SQLException("Creating messages failed, expected " + messages.size()
+                        + " IDs but obtained " + index + ".");
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            if (conn != null)
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                }
+            throw new RuntimeException("Error accessing database", e);
+        } finally {
+            if (generatedKeys != null)
+                try {
+                    generatedKeys.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            if (pstmt != null)
+                try {
+                    pstmt.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            if (conn != null)
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+        }
+        return messages;
+    }
+
     /**
      * Updates an existing Message in the database.
+     * Only the message text can change; see updateText.
      *
      * @param message The Message object to be updated.
-     * @return The updated Message object.
+     * @return The updated Message as stored, or the given Message if no row
+     *         has its ID.
      */
     @Override
     public Message update(Message message) {
+        return updateText(message.getMessage_id(), message.getMessage_text()).orElse(message);
+    }
+
+    /**
+     * Replaces the text of a Message and returns the full updated row.
+     * FINAL TABLE yields the row as it is after the update, so the write and
+     * the read happen atomically in one round trip.
+     *
+     * @param id   The ID of the Message to be updated.
+     * @param text The new message text.
+     * @return An Optional containing the updated Message or empty if not found.
+     */
+    public Optional<Message> updateText(int id, String text) {
+        String sql = "SELECT * FROM FINAL TABLE (UPDATE Message SET message_text = ? WHERE message_id = ?)";
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = ConnectionUtil.getConnection();
+            pstmt = conn.prepareStatement(sql);
+
+            pstmt.setString(1, text);
+            pstmt.setInt(2, id);
+            rs = pstmt.executeQuery();
+            if (rs.next()) {
+                return Optional.of(new Message(
+                        rs.getInt("message_id"),
+                        rs.getInt("posted_by"),
+                        rs.getString("message_text"),
+                        rs.getLong("time_posted_epoch")));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace(); // Handle exception
+        } finally {
+            if (rs != null)
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            if (pstmt != null)
+                try {
+                    pstmt.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            if (conn != null)
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+        }
+        // no row matched, so nothing was updated
+        return Optional.empty();
+    }
+
+    /**
+     * Replaces the text of several Messages with one JDBC batch, then reads
+     * the updated rows back with one query, all in a single transaction.
+     * Only the message text can change; see updateText.
+     *
+     * @param messages The Message objects to be updated.
+     * @return One Optional per input Message, in input order, holding the
+     *         Message as stored or empty if no row has its ID.
+     * @throws RuntimeException if the batch fails and has been rolled back
+     */
+    @Override
+    public List<Optional<Message>> updateAll(List<Message> messages) {
+        int[] ids = new int[messages.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = messages.get(i).getMessage_id();
+        }
+        if (ids.length == 0) {
+            return inRequestOrder(ids, Collections.emptyMap());
+        }
         String sql = "UPDATE Message SET message_text = ? WHERE message_id = ?";
+        String readBack = "SELECT * FROM Message WHERE message_id = ANY(?)";
         Connection conn = null;
         PreparedStatement pstmt = null;
+        Map<Integer, Message> updated;
 
         try {
             conn = ConnectionUtil.getConnection();
+            conn.setAutoCommit(false);
             pstmt = conn.prepareStatement(sql);
 
-            pstmt.setString(1, message.getMessage_text());
-            pstmt.setInt(3, message.getMessage_id());
-            pstmt.executeUpdate();
+            for (Message message : messages) {
+                pstmt.setString(1, message.getMessage_text());
+                pstmt.setInt(2, message.getMessage_id());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
 
+            // every row that exists was updated, so the rows read back are
+            // exactly the updated ones
+            updated = queryByIds(conn, readBack, ids);
+            conn.commit();
         } catch (SQLException e) {
-            e.printStackTrace(); // Handle exception
+            if (conn != null)
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                }
+            throw new RuntimeException("Error accessing database", e);
         } finally {
             if (pstmt != null)
                 try {
@@ -112,12 +352,13 @@ public class MessageDao implements DaoInterface<Message> {
                 }
             if (conn != null)
                 try {
+                    conn.setAutoCommit(true);
                     conn.close();
                 } catch (SQLException e) {
                     e.printStackTrace();
                 }
         }
-        return message;
+        return inRequestOrder(ids, updated);
     }
 
     /**
@@ -128,30 +369,35 @@ public class MessageDao implements DaoInterface<Message> {
      */
     @Override
     public Optional<Message> delete(int id) {
-        // First, find the message to be deleted
-        Optional<Message> messageToDelete = get(id);
-        if (messageToDelete == null) {
-            return Optional.empty();
-        }
-
-        String sql = "DELETE FROM Message WHERE message_id = ?";
+        // OLD TABLE returns the row as it was before the delete, so the read and
+        // the delete happen atomically in one round trip
+        String sql = "SELECT * FROM OLD TABLE (DELETE FROM Message WHERE message_id = ?)";
         Connection conn = null;
         PreparedStatement pstmt = null;
+        ResultSet rs = null;
 
         try {
             conn = ConnectionUtil.getConnection();
             pstmt = conn.prepareStatement(sql);
 
             pstmt.setInt(1, id);
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows == 0) {
-                return Optional.empty(); // No rows affected, message was not deleted
+            rs = pstmt.executeQuery();
+            if (rs.next()) {
+                return Optional.of(new Message(
+                        rs.getInt("message_id"),
+                        rs.getInt("posted_by"),
+                        rs.getString("message_text"),
+                        rs.getLong("time_posted_epoch")));
             }
-
         } catch (SQLException e) {
             e.printStackTrace(); // Handle exception
-            return Optional.empty();
         } finally {
+            if (rs != null)
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
             if (pstmt != null)
                 try {
                     pstmt.close();
@@ -165,8 +411,53 @@ public class MessageDao implements DaoInterface<Message> {
                     e.printStackTrace();
                 }
         }
+        // no row matched, so nothing was deleted
+        return Optional.empty();
+    }
 
-        return messageToDelete;
+    /**
+     * Deletes several Messages by their IDs with a single statement inside
+     * one transaction. As with delete, OLD TABLE returns the deleted rows in
+     * the same round trip.
+     *
+     * @param ids The IDs of the Messages to be deleted; may contain repeats.
+     * @return One Optional per requested ID, in request order, holding the
+     *         deleted Message or empty if not found.
+     * @throws RuntimeException if the delete fails
+     */
+    @Override
+    public List<Optional<Message>> deleteAll(int[] ids) {
+        Map<Integer, Message> deleted = Collections.emptyMap();
+        if (ids.length == 0) {
+            return inRequestOrder(ids, deleted);
+        }
+        String sql = "SELECT * FROM OLD TABLE (DELETE FROM Message WHERE message_id = ANY(?))";
+        Connection conn = null;
+
+        try {
+            conn = ConnectionUtil.getConnection();
+            // explicit, because a failed OLD TABLE delete is not undone in auto-commit mode
+            conn.setAutoCommit(false);
+            deleted = queryByIds(conn, sql, ids);
+            conn.commit();
+        } catch (SQLException e) {
+            if (conn != null)
+                try {
+                    conn.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                }
+            throw new RuntimeException("Error accessing database", e);
+        } finally {
+            if (conn != null)
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+        }
+        return inRequestOrder(ids, deleted);
     }
 
     /**
@@ -269,6 +560,41 @@ public class MessageDao implements DaoInterface<Message> {
         return Optional.empty();
     }
 
+    /**
+     * Retrieves many Messages by their IDs in one query. The IDs are bound as
+     * a single array parameter, so the statement is the same whatever their
+     * number and H2 resolves them through the primary key index.
+     *
+     * @param ids The IDs of the Messages to be retrieved; may contain repeats.
+     * @return One Optional per requested ID, in request order, holding the
+     *         found Message or empty if there is no Message with that ID.
+     * @throws RuntimeException if the query fails
+     */
+    @Override
+    public List<Optional<Message>> getMany(int[] ids) {
+        Map<Integer, Message> found = Collections.emptyMap();
+        if (ids.length == 0) {
+            return inRequestOrder(ids, found);
+        }
+        String sql = "SELECT * FROM Message WHERE message_id = ANY(?)";
+        Connection conn = null;
+
+        try {
+            conn = ConnectionUtil.getConnection();
+            found = queryByIds(conn, sql, ids);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error accessing database", e);
+        } finally {
+            if (conn != null)
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+        }
+        return inRequestOrder(ids, found);
+    }
+
     /**
      * Retrieves all messages posted by a specific user.
      *
@@ -320,4 +646,274 @@ public class MessageDao implements DaoInterface<Message> {
         }
         return messages;
     }
+
+    /**
+     * Retrieves one page of Messages ordered by message_id, using a keyset
+     * (cursor) on the primary key so every page costs the same no matter how
+     * deep into the table it is.
+     *
+     * @param afterId  Only return messages with a greater id, or null.
+     * @param beforeId Only return messages with a smaller id, or null. When given
+     *                 without afterId the page is read backwards from this id.
+     * @param limit    The maximum number of messages to return.
+     * @return The page of messages in ascending id order, with the cursor for the
+     *         next page in the same direction.
+     * @throws RuntimeException if the query fails
+     */
+    public Page<Message> getPage(Integer afterId, Integer beforeId, int limit) {
+        return queryPage(null, afterId, beforeId, limit);
+    }
+
+    /**
+     * Retrieves one page of the messages posted by a specific user, ordered by
+     * message_id. Backed by the (posted_by, message_id) index.
+     *
+     * @param id       The ID of the user whose messages are to be retrieved.
+     * @param afterId  Only return messages with a greater id, or null.
+     * @param beforeId Only return messages with a smaller id, or null. When given
+     *                 without afterId the page is read backwards from this id.
+     * @param limit    The maximum number of messages to return.
+     * @return The page of messages in ascending id order, with the cursor for the
+     *         next page in the same direction.
+     * @throws RuntimeException if the query fails
+     */
+    public Page<Message> getPageByUserId(int id, Integer afterId, Integer beforeId, int limit) {
+        return queryPage(id, afterId, beforeId, limit);
+    }
+
+    private Page<Message> queryPage(Integer postedBy, Integer afterId, Integer beforeId, int limit) {
+        boolean backward = afterId == null && beforeId != null;
+        String sql = "SELECT * FROM Message WHERE "
+                + (postedBy != null ? "posted_by = ? AND " : "")
+                + "message_id > ? AND message_id < ? ORDER BY message_id "
+                + (backward ? "DESC" : "ASC")
+                + " LIMIT ?";
+        List<Message> messages = new ArrayList<>();
+        boolean hasMore = false;
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = ConnectionUtil.getConnection();
+            pstmt = conn.prepareStatement(sql);
+
+            int index = 1;
+            if (postedBy != null) {
+                pstmt.setInt(index++, postedBy);
+            }
+            pstmt.setInt(index++, afterId != null ? afterId : Integer.MIN_VALUE);
+            pstmt.setInt(index++, beforeId != null ? beforeId : Integer.MAX_VALUE);
+            // fetch one extra row to learn whether another page exists
+            pstmt.setInt(index, limit + 1);
+            rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                if (messages.size() == limit) {
+                    hasMore = true;
+                    break;
+                }
+                messages.add(new Message(
+                        rs.getInt("message_id"),
+                        rs.getInt("posted_by"),
+                        rs.getString("message_text"),
+                        rs.getLong("time_posted_epoch")));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error accessing database", e);
+        } finally {
+            if (rs != null)
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            if (pstmt != null)
+                try {
+                    pstmt.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            if (conn != null)
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+        }
+
+        if (backward) {
+            Collections.reverse(messages);
+        }
+        Integer nextCursor = null;
+        if (hasMore) {
+            nextCursor = backward
+                    ? messages.get(0).getMessage_id()
+                    : messages.get(messages.size() - 1).getMessage_id();
+        }
+        return new Page<>(messages, nextCursor);
+    }
+
+    /**
+     * Streams every Message to the handler as the ResultSet cursor advances.
+     * The query runs lazily with a bounded fetch size, so memory use stays
+     * constant no matter how many messages exist.
+     *
+     * @param handler Receives each message in ascending id order.
+     * @throws IOException if the handler fails to write a row
+     */
+    public void streamAll(RowHandler<Message> handler) throws IOException {
+        streamQuery(null, handler);
+    }
+
+    /**
+     * Streams the messages posted by a specific user to the handler as the
+     * ResultSet cursor advances.
+     *
+     * @param id      The ID of the user whose messages are to be streamed.
+     * @param handler Receives each message in ascending id order.
+     * @throws IOException if the handler fails to write a row
+     */
+    public void streamAllByUserId(int id, RowHandler<Message> handler) throws IOException {
+        streamQuery(id, handler);
+    }
+
+    private void streamQuery(Integer postedBy, RowHandler<Message> handler) throws IOException {
+        String sql = postedBy != null
+                ? "SELECT * FROM Message WHERE posted_by = ? ORDER BY message_id"
+                : "SELECT * FROM Message ORDER BY message_id";
+        Connection conn = null;
+        Statement lazyToggle = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = ConnectionUtil.getConnection();
+            // let H2 produce rows on demand instead of materialising the result first
+            lazyToggle = conn.createStatement();
+            lazyToggle.execute("SET LAZY_QUERY_EXECUTION TRUE");
+
+            pstmt = conn.prepareStatement(sql);
+            pstmt.setFetchSize(STREAM_FETCH_SIZE);
+            if (postedBy != null) {
+                pstmt.setInt(1, postedBy);
+            }
+            rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                handler.handle(new Message(
+                        rs.getInt("message_id"),
+                        rs.getInt("posted_by"),
+                        rs.getString("message_text"),
+                        rs.getLong("time_posted_epoch")));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error accessing database", e);
+        } finally {
+            if (rs != null)
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            if (pstmt != null)
+                try {
+                    pstmt.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            if (lazyToggle != null)
+                try {
+                    // the connection goes back to the pool, so restore the default
+                    lazyToggle.execute("SET LAZY_QUERY_EXECUTION FALSE");
+                    lazyToggle.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            if (conn != null)
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+        }
+    }
+
+    /**
+     * @param e The failure raised while inserting, possibly wrapped.
+     * @return true if it was caused by the foreign key on message.posted_by
+     */
+    private boolean isMissingPoster(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                SQLException sqlException = (SQLException) cause;
+                if (sqlException.getErrorCode() == ErrorCode.REFERENTIAL_INTEGRITY_VIOLATED_PARENT_MISSING_1
+                        || "23506".equals(sqlException.getSQLState())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs a query that returns Message rows, binding the IDs as its one
+     * array parameter.
+     *
+     * @param conn The connection to run the query on; it is not closed.
+     * @param sql  A statement with a single "= ANY(?)" parameter.
+     * @param ids  The IDs to bind.
+     * @return the returned rows, keyed by message_id
+     * @throws SQLException if the query fails
+     */
+    private Map<Integer, Message> queryByIds(Connection conn, String sql, int[] ids) throws SQLException {
+        Map<Integer, Message> messages = new HashMap<>();
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        Array idArray = null;
+
+        try {
+            pstmt = conn.prepareStatement(sql);
+
+            idArray = conn.createArrayOf("INTEGER", Arrays.stream(ids).boxed().toArray());
+            pstmt.setArray(1, idArray);
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                Message message = new Message(
+                        rs.getInt("message_id"),
+                        rs.getInt("posted_by"),
+                        rs.getString("message_text"),
+                        rs.getLong("time_posted_epoch"));
+                messages.put(message.getMessage_id(), message);
+            }
+        } finally {
+            if (rs != null)
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            if (idArray != null)
+                try {
+                    idArray.free();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            if (pstmt != null)
+                try {
+                    pstmt.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+        }
+        return messages;
+    }
+
+    private static List<Optional<Message>> inRequestOrder(int[] ids, Map<Integer, Message> messages) {
+        List<Optional<Message>> results = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            results.add(Optional.ofNullable(messages.get(id)));
+        }
+        return results;
+    }
 }
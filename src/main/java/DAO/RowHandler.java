@@ -0,0 +1,16 @@
+package DAO;
+
+import java.io.IOException;
+
+/**
+ * Callback used by streaming DAO reads. It receives each row as soon as the
+ * ResultSet cursor reaches it, so callers never hold the whole result in
+ * memory.
+ *
+ * @param <T> Type parameter representing the model class.
+ */
+@FunctionalInterface
+public interface RowHandler<T> {
+
+    void handle(T row) throws IOException;
+}
@@ -0,0 +1,28 @@
+package DAO;
+
+/**
+ * Thrown when a Message cannot be stored because its posted_by does not refer
+ * to an existing Account. It is raised from the foreign key on
+ * message.posted_by, so it stays correct when an account is deleted while a
+ * message for it is being created.
+ */
+public class UnknownPosterException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    private final int postedBy;
+
+    /**
+     * @param postedBy The account ID that does not exist.
+     * @param cause    The constraint violation reported by the database.
+     */
+    public UnknownPosterException(int postedBy, Throwable cause) {
+        super("No account with id " + postedBy, cause);
+        this.postedBy = postedBy;
+    }
+
+    /**
+     * @return the account ID that does not exist
+     */
+    public int getPostedBy() {
+        return postedBy;
+    }
+}
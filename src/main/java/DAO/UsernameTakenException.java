@@ -0,0 +1,27 @@
+package DAO;
+
+/**
+ * Thrown when an Account cannot be stored because another Account already
+ * has its username. It is raised from the UNIQUE constraint on
+ * account.username, so it stays correct when registrations race.
+ */
+public class UsernameTakenException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    private final String username;
+
+    /**
+     * @param username The username that is already in use.
+     * @param cause    The constraint violation reported by the database.
+     */
+    public UsernameTakenException(String username, Throwable cause) {
+        super("Username already taken: " + username, cause);
+        this.username = username;
+    }
+
+    /**
+     * @return the username that is already in use
+     */
+    public String getUsername() {
+        return username;
+    }
+}
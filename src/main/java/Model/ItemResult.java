@@ -0,0 +1,59 @@
+package Model;
+
+/**
+ * The outcome for one element of a batch request.
+ * Exactly one of item and error is set: item holds the stored entity when the
+ * element succeeded, error describes why it was rejected otherwise.
+ *
+ * @param <T> Type parameter representing the model class.
+ */
+public class ItemResult<T> {
+    private final int index;
+    private final T item;
+    private final String error;
+
+    private ItemResult(int index, T item, String error) {
+        this.index = index;
+        this.item = item;
+        this.error = error;
+    }
+
+    /**
+     * @param index The position of the element in the request.
+     * @param item  The stored entity.
+     * @return a successful result
+     */
+    public static <T> ItemResult<T> success(int index, T item) {
+        return new ItemResult<>(index, item, null);
+    }
+
+    /**
+     * @param index The position of the element in the request.
+     * @param error Why the element was rejected.
+     * @return a failed result
+     */
+    public static <T> ItemResult<T> failure(int index, String error) {
+        return new ItemResult<>(index, null, error);
+    }
+
+    /**
+     * @return the position of the element in the request
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the stored entity, or null if the element was rejected
+     */
+    public T getItem() {
+        return item;
+    }
+
+    /**
+     * @return why the element was rejected, or null if it succeeded
+     */
+    public String getError() {
+        return error;
+    }
+}
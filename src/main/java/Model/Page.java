@@ -0,0 +1,40 @@
+package Model;
+
+import java.util.List;
+
+/**
+ * One page of results from a keyset-paginated query.
+ *
+ * nextCursor is the id to pass back (as after_id when paging forward, or as
+ * before_id when paging backward) to fetch the following page. It is null
+ * when there are no more results in that direction.
+ *
+ * @param <T> Type parameter representing the model class.
+ */
+public class Page<T> {
+    private final List<T> items;
+    private final Integer nextCursor;
+
+    /**
+     * @param items      The results on this page, in ascending id order.
+     * @param nextCursor The cursor for the following page, or null if this is the last one.
+     */
+    public Page(List<T> items, Integer nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return the results on this page
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the cursor for the following page, or null if this is the last one
+     */
+    public Integer getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -1,38 +1,184 @@
 package Service;
 
 import DAO.AccountDao;
+import DAO.UsernameTakenException;
 import Model.Account;
+import Util.AppConfig;
+import Util.CacheStats;
+import Util.DatabaseExecutor;
+import Util.IdSet;
+import Util.LruCache;
+import Util.PasswordHasher;
+import Util.UnitOfWork;
+import org.mindrot.jbcrypt.BCrypt;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Service layer class for handling business logic associated with Account
  * operations.
  * This class uses AccountDao to interact with the database
+ *
+ * It also keeps an in-memory index of every account ID so callers can check
+ * that an account exists without a query. The index is loaded when the
+ * service is created and kept up to date by create and delete. It may briefly
+ * lag a concurrent write, so the database constraints remain the final check.
+ *
+ * Username lookups go through a bounded LruCache that also remembers names
+ * with no account, so repeated logins for the same name, good or bad, do not
+ * query the database. create, update and delete invalidate the affected
+ * names. The cache can be turned off with
+ * -Dsocialmedia.cache.accounts.enabled=false.
+ *
+ * Updates read the old usernames and write the new ones in one UnitOfWork
+ * transaction, so the cache entries they invalidate match what was replaced.
+ *
+ * Passwords are hashed and verified on the PasswordHasher worker pool. The
+ * async methods hand back a future so request threads never run BCrypt. Their
+ * database steps run on the DatabaseExecutor, so the hashing workers never
+ * wait on a query.
  */
 public class AccountService implements ServiceInterface<Account> {
+    private static final boolean CACHE_ENABLED = AppConfig.getBoolean("cache.accounts.enabled", true);
+    private static final int CACHE_MAX_ENTRIES = AppConfig.getInt("cache.accounts.maxEntries", 10000);
+    private static final long CACHE_TTL_MILLIS = AppConfig.getLong("cache.accounts.ttlMillis", 300000);
+
     private final AccountDao accountDao = new AccountDao();
+    private final IdSet accountIds = new IdSet();
+    // empty Optionals are the negative entries for names with no account
+    private final LruCache<String, Optional<Account>> usernameCache = new LruCache<>(
+            CACHE_ENABLED ? CACHE_MAX_ENTRIES : 0, CACHE_TTL_MILLIS, AccountService::estimateBytes);
+
+    /**
+     * Creates the service and loads the account ID index from the database.
+     */
+    public AccountService() {
+        accountIds.replaceAll(accountDao.getAllIds());
+    }
 
     /**
-     * Creates a new Account in the database.
+     * Creates a new Account in the database, hashing its password first.
+     * Waits for the hash; request handlers should use createAsync instead.
      *
-     * @param account The Account object to be created.
+     * @param account The Account object to be created, with a plain text password.
      * @return The newly created Account object with a generated ID.
+     * @throws UsernameTakenException if another Account already has the username
+     * @throws RejectedExecutionException if the password hashing queue is full
      */
     @Override
     public Account create(Account account) {
-        return accountDao.create(account);
+        return await(createAsync(account));
+    }
+
+    /**
+     * Hashes the password on the PasswordHasher pool, then creates the Account
+     * on the DatabaseExecutor.
+     *
+     * @param account The Account object to be created, with a plain text password.
+     *                It is given the generated ID and keeps its plain text password.
+     * @return a future that completes with the created Account, or fails with
+     *         UsernameTakenException if another Account already has the
+     *         username, or RejectedExecutionException if the database queue is full
+     * @throws RejectedExecutionException if the password hashing queue is full
+     */
+    public CompletableFuture<Account> createAsync(Account account) {
+        return PasswordHasher.hash(account.getPassword()).thenApplyAsync(hashed -> {
+            Account stored = accountDao.create(new Account(account.getUsername(), hashed));
+            account.setAccount_id(stored.getAccount_id());
+            if (stored.getAccount_id() > 0) {
+                accountIds.add(stored.getAccount_id());
+            }
+            invalidateUsername(stored.getUsername());
+            return account;
+        }, DatabaseExecutor.get());
+    }
+
+    /**
+     * Creates several Accounts in one transaction. The passwords are hashed
+     * first, a few at a time on the PasswordHasher pool, and this call waits
+     * for them, so a batch of any size is accepted.
+     *
+     * @param accounts The Account objects to be created, with plain text
+     *                 passwords. They are given their generated IDs and keep
+     *                 their plain text passwords.
+     * @return The same Account objects, in the same order.
+     * @throws UsernameTakenException if a username is already in use or
+     *                                appears twice; no account is created
+     */
+    @Override
+    public List<Account> createAll(List<Account> accounts) {
+        List<Account> stored = accountDao.createAll(hashPasswords(accounts));
+        for (int i = 0; i < accounts.size(); i++) {
+            int id = stored.get(i).getAccount_id();
+            accounts.get(i).setAccount_id(id);
+            accountIds.add(id);
+            invalidateUsername(stored.get(i).getUsername());
+        }
+        return accounts;
     }
 
     /**
-     * Updates an existing Account in the database.
+     * Updates an existing Account in the database, hashing its new password.
+     * The old username is read in the same transaction as the update.
      *
-     * @param account The Account object to be updated.
+     * @param account The Account object to be updated, with a plain text password.
      * @return The updated Account object.
+     * @throws UsernameTakenException if another Account already has the new username
+     * @throws RejectedExecutionException if the password hashing queue is full
      */
     @Override
     public Account update(Account account) {
-        return accountDao.update(account);
+        String hashed = await(PasswordHasher.hash(account.getPassword()));
+        // read the old name and write the new one in one transaction, so the right name is invalidated
+        Optional<String> previousUsername = UnitOfWork.inTransaction(() -> {
+            Optional<String> previous = accountDao.get(account.getAccount_id()).map(Account::getUsername);
+            accountDao.update(new Account(account.getAccount_id(), account.getUsername(), hashed));
+            return previous;
+        });
+        previousUsername.ifPresent(this::invalidateUsername);
+        invalidateUsername(account.getUsername());
+        return account;
+    }
+
+    /**
+     * Updates several Accounts in one transaction, hashing their new passwords
+     * first, a few at a time on the PasswordHasher pool. The old usernames
+     * are read in the same transaction.
+     *
+     * @param accounts The Account objects to be updated, with plain text passwords.
+     * @return One Optional per input Account, in input order, holding the
+     *         Account as given or empty if the Account was not found.
+     * @throws UsernameTakenException if a new username is already in use; no
+     *                                account is updated
+     */
+    @Override
+    public List<Optional<Account>> updateAll(List<Account> accounts) {
+        List<Account> hashed = hashPasswords(accounts);
+        int[] ids = new int[accounts.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = accounts.get(i).getAccount_id();
+        }
+        List<Optional<Account>> previous = new ArrayList<>(ids.length);
+        List<Optional<Account>> updated = UnitOfWork.inTransaction(() -> {
+            previous.addAll(accountDao.getMany(ids));
+            return accountDao.updateAll(hashed);
+        });
+
+        List<Optional<Account>> results = new ArrayList<>(accounts.size());
+        for (int i = 0; i < accounts.size(); i++) {
+            if (updated.get(i).isPresent()) {
+                previous.get(i).map(Account::getUsername).ifPresent(this::invalidateUsername);
+                invalidateUsername(accounts.get(i).getUsername());
+                results.add(Optional.of(accounts.get(i)));
+            } else {
+                results.add(Optional.empty());
+            }
+        }
+        return results;
     }
 
     /**
@@ -41,10 +187,48 @@ public class AccountService implements ServiceInterface<Account> {
      * @param id The ID of the Account to be deleted.
      * @return An Optional containing the deleted Account or empty if the Account
      *         was not found.
+     * @throws RuntimeException if the delete fails, for example because the
+     *                          account still has messages
      */
     @Override
     public Optional<Account> delete(int id) {
-        return accountDao.delete(id);
+        Optional<Account> deleted = accountDao.delete(id);
+        deleted.ifPresent(account -> {
+            accountIds.remove(account.getAccount_id());
+            invalidateUsername(account.getUsername());
+        });
+        return deleted;
+    }
+
+    /**
+     * Deletes several Accounts by their IDs in one statement.
+     *
+     * @param ids The IDs of the Accounts to be deleted.
+     * @return One Optional per requested ID, in request order, holding the
+     *         deleted Account or empty if the Account was not found.
+     * @throws RuntimeException if the delete fails, for example because an
+     *                          account still has messages
+     */
+    @Override
+    public List<Optional<Account>> deleteAll(int[] ids) {
+        List<Optional<Account>> deleted = accountDao.deleteAll(ids);
+        for (Optional<Account> account : deleted) {
+            account.ifPresent(found -> {
+                accountIds.remove(found.getAccount_id());
+                invalidateUsername(found.getUsername());
+            });
+        }
+        return deleted;
+    }
+
+    /**
+     * Checks whether an Account exists using the in-memory ID index.
+     *
+     * @param id The ID of the Account.
+     * @return true if an Account with the ID exists
+     */
+    public boolean exists(int id) {
+        return accountIds.contains(id);
     }
 
     /**
@@ -59,6 +243,18 @@ public class AccountService implements ServiceInterface<Account> {
         return accountDao.get(id);
     }
 
+    /**
+     * Retrieves many Accounts by their IDs in one query.
+     *
+     * @param ids The IDs of the Accounts to be retrieved.
+     * @return One Optional per requested ID, in request order, holding the
+     *         found Account or empty if the Account is not found.
+     */
+    @Override
+    public List<Optional<Account>> getMany(int[] ids) {
+        return accountDao.getMany(ids);
+    }
+
     /**
      * Retrieves all Accounts from the database.
      *
@@ -70,13 +266,112 @@ public class AccountService implements ServiceInterface<Account> {
     }
 
     /**
-     * Finds an Account by its username.
+     * Finds an Account by its username, reading through the username cache.
      * 
      * @param username The username to search for.
      * @return An Optional containing the Account if found, or empty if not found.
+     *         The Account is a copy, so callers may modify it.
      */
     public Optional<Account> getByUsername(String username) {
-        return accountDao.getByUsername(username);
+        if (username == null) {
+            return Optional.empty();
+        }
+        return usernameCache.get(username, accountDao::getByUsername).map(AccountService::copy);
+    }
+
+    /**
+     * Checks a username and password. The account is looked up through the
+     * username cache on the DatabaseExecutor; only the BCrypt check runs on
+     * the PasswordHasher pool, and only when the account exists.
+     *
+     * @param username The username to log in as.
+     * @param password The plain text password to check.
+     * @return a future that completes with a copy of the Account if the
+     *         credentials match, or empty if they do not, or fails with
+     *         RejectedExecutionException if the password hashing queue is full
+     * @throws RejectedExecutionException if the database queue is full
+     */
+    public CompletableFuture<Optional<Account>> authenticateAsync(String username, String password) {
+        return CompletableFuture.supplyAsync(() -> getByUsername(username), DatabaseExecutor.get())
+                .thenCompose(account -> {
+                    if (account.isEmpty()) {
+                        return CompletableFuture.completedFuture(Optional.<Account>empty());
+                    }
+                    return PasswordHasher.verify(password, account.get().getPassword())
+                            .thenApply(matches -> matches ? account : Optional.<Account>empty());
+                });
+    }
+
+    /**
+     * @return hit, miss, eviction and memory figures for the username cache
+     */
+    public CacheStats getCacheStats() {
+        return usernameCache.stats();
+    }
+
+    /**
+     * Hashes the passwords on the PasswordHasher pool, at most one per worker
+     * at a time, so a large batch never fills the queue that logins share. A
+     * hash the pool refuses anyway runs on the calling thread.
+     *
+     * @return copies of the accounts holding the hashed passwords
+     */
+    private static List<Account> hashPasswords(List<Account> accounts) {
+        int chunkSize = PasswordHasher.getThreadCount();
+        List<Account> hashed = new ArrayList<>(accounts.size());
+        for (int start = 0; start < accounts.size(); start += chunkSize) {
+            List<Account> chunk = accounts.subList(start, Math.min(start + chunkSize, accounts.size()));
+            List<CompletableFuture<String>> hashes = new ArrayList<>(chunk.size());
+            for (Account account : chunk) {
+                try {
+                    hashes.add(PasswordHasher.hash(account.getPassword()));
+                } catch (RejectedExecutionException e) {
+                    hashes.add(CompletableFuture.completedFuture(
+                            BCrypt.hashpw(account.getPassword(), BCrypt.gensalt())));
+                }
+            }
+            for (int i = 0; i < chunk.size(); i++) {
+                Account account = chunk.get(i);
+                hashed.add(new Account(account.getAccount_id(), account.getUsername(), await(hashes.get(i))));
+            }
+        }
+        return hashed;
+    }
+
+    /**
+     * Waits for a future, rethrowing its failure as it was thrown.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void invalidateUsername(String username) {
+        if (username != null) {
+            usernameCache.invalidate(username);
+        }
+    }
+
+    private static Account copy(Account account) {
+        return new Account(account.getAccount_id(), account.getUsername(), account.getPassword());
+    }
+
+    // the Optional plus, for positive entries, the Account and its two strings
+    private static long estimateBytes(Optional<Account> account) {
+        long bytes = 16;
+        if (account.isPresent()) {
+            String username = account.get().getUsername();
+            String password = account.get().getPassword();
+            bytes += 24 + 40 + (username == null ? 0 : 2L * username.length())
+                    + 40 + (password == null ? 0 : 2L * password.length());
+        }
+        return bytes;
     }
         /**
      * Validates registration input
@@ -1,26 +1,198 @@
 package Service;
 
 import DAO.MessageDao;
+import DAO.RowHandler;
+import DAO.UnknownPosterException;
+import Model.ItemResult;
 import Model.Message;
+import Model.Page;
+import Util.AppConfig;
+import Util.CacheStats;
+import Util.LruCache;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Service layer for handling business logic associated with Message operations.
- * This class uses the MessageDao to interact with the db
+ * This class uses the MessageDao to interact with the db, and the
+ * AccountService's in-memory ID index to check that posters exist before
+ * creating messages. The check needs no connection, so none is borrowed until
+ * the insert itself.
+ *
+ * Single-message lookups go through a read-through LruCache. Updates and
+ * deletes invalidate the affected entry after the database has changed.
+ * The cache can be turned off with -Dsocialmedia.cache.messages.enabled=false.
+ *
+ * Each account's full message list (its timeline) is cached the same way, as
+ * long as it holds no more than cache.timelines.maxMessages messages. A longer
+ * timeline is cached as the TIMELINE_TOO_LONG marker, so it is read straight
+ * from the database without first trying to load it again. Every create,
+ * update and delete invalidates the poster's timeline once it has been
+ * written.
+ *
+ * Every write also bumps a version counter. getVersionStamp combines it with
+ * a random per-instance epoch into a value that changes whenever any message
+ * does, which the controller uses as an ETag without reading the database.
  */
 public class MessageService implements ServiceInterface<Message> {
+    private static final int DEFAULT_PAGE_SIZE = AppConfig.getInt("pagination.defaultLimit", 50);
+    private static final int MAX_PAGE_SIZE = AppConfig.getInt("pagination.maxLimit", 1000);
+    private static final boolean CACHE_ENABLED = AppConfig.getBoolean("cache.messages.enabled", true);
+    private static final int CACHE_MAX_ENTRIES = AppConfig.getInt("cache.messages.maxEntries", 10000);
+    private static final long CACHE_TTL_MILLIS = AppConfig.getLong("cache.messages.ttlMillis", 300000);
+    private static final boolean TIMELINE_CACHE_ENABLED = AppConfig.getBoolean("cache.timelines.enabled", true);
+    private static final int TIMELINE_CACHE_MAX_ENTRIES = AppConfig.getInt("cache.timelines.maxEntries", 1000);
+    private static final long TIMELINE_CACHE_TTL_MILLIS = AppConfig.getLong("cache.timelines.ttlMillis", 300000);
+    private static final int TIMELINE_MAX_MESSAGES = AppConfig.getInt("cache.timelines.maxMessages", 1000);
+    // stands in for a timeline too long to cache; compared by identity, so it
+    // must not be the shared List.of() an empty timeline is copied to
+    private static final List<Message> TIMELINE_TOO_LONG = Collections.unmodifiableList(new ArrayList<>());
+
     private final MessageDao messageDao = new MessageDao();
+    private final AccountService accountService;
+    // random so stamps from an earlier instance or process never match this one
+    private final long versionEpoch = ThreadLocalRandom.current().nextLong();
+    private final AtomicLong version = new AtomicLong();
+    private final LruCache<Integer, Message> messageCache = new LruCache<>(
+            CACHE_ENABLED ? CACHE_MAX_ENTRIES : 0, CACHE_TTL_MILLIS, MessageService::estimateBytes);
+    private final LruCache<Integer, List<Message>> timelineCache = new LruCache<>(
+            TIMELINE_CACHE_ENABLED ? TIMELINE_CACHE_MAX_ENTRIES : 0, TIMELINE_CACHE_TTL_MILLIS,
+            MessageService::estimateBytes);
+
+    /**
+     * Creates the service with its own AccountService.
+     */
+    public MessageService() {
+        this(new AccountService());
+    }
+
+    /**
+     * @param accountService Used to check that posters exist. Share the
+     *                       application's instance so its ID index sees every
+     *                       account created or deleted.
+     */
+    public MessageService(AccountService accountService) {
+        this.accountService = accountService;
+    }
 
     /**
      * Creates a new Message in the database.
      *
      * @param message The Message object to be created.
      * @return The newly created Message object with a generated ID.
+     * @throws UnknownPosterException if posted_by does not refer to an existing Account
      */
     @Override
     public Message create(Message message) {
-        return messageDao.create(message);
+        Message created = messageDao.create(message);
+        afterWrite(created);
+        return created;
+    }
+
+    /**
+     * Creates a Message if its poster exists. The poster is checked against the
+     * in-memory account ID index; the foreign key on posted_by catches any
+     * account deleted in the meantime.
+     *
+     * @param message The Message object to be created.
+     * @return An Optional containing the created Message with its generated ID,
+     *         or empty if posted_by does not refer to an existing Account.
+     */
+    public Optional<Message> createForExistingPoster(Message message) {
+        if (!accountService.exists(message.getPosted_by())) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(create(message));
+        } catch (UnknownPosterException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Validates and creates a batch of Messages.
+     * Every message text is checked with isValidText and every poster against
+     * the in-memory account ID index. The messages that pass are inserted
+     * together in one transaction; the rest are reported as failures. If a
+     * poster is deleted after the check, the foreign key fails the insert and
+     * nothing is stored.
+     *
+     * @param messages The Message objects to be created.
+     * @return One result per input message, in input order, holding either the
+     *         created Message with its generated ID or the reason it was rejected.
+     * @throws RuntimeException if the insert fails and has been rolled back
+     */
+    public List<ItemResult<Message>> createBatch(List<Message> messages) {
+        List<ItemResult<Message>> results = createBatchResults(messages);
+        for (ItemResult<Message> result : results) {
+            if (result.getItem() != null) {
+                afterWrite(result.getItem());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Creates several Messages in one transaction. Unlike createBatch, the
+     * messages are not validated first; if any insert fails none are stored.
+     *
+     * @param messages The Message objects to be created.
+     * @return The same Message objects, in the same order, with their generated IDs.
+     * @throws RuntimeException if the batch fails and has been rolled back
+     */
+    @Override
+    public List<Message> createAll(List<Message> messages) {
+        List<Message> created = messageDao.createAll(messages);
+        for (Message message : created) {
+            afterWrite(message);
+        }
+        return created;
+    }
+
+    private List<ItemResult<Message>> createBatchResults(List<Message> messages) {
+        List<ItemResult<Message>> results = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            if (message == null) {
+                results.add(ItemResult.failure(i, "message is missing"));
+            } else if (!isValidText(message)) {
+                results.add(ItemResult.failure(i, "message_text must not be blank and must be under 255 characters"));
+            } else {
+                results.add(null);
+            }
+        }
+
+        List<Message> toCreate = new ArrayList<>();
+        List<Integer> toCreateIndexes = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            if (results.get(i) != null) {
+                continue;
+            }
+            Message message = messages.get(i);
+            if (accountService.exists(message.getPosted_by())) {
+                toCreate.add(message);
+                toCreateIndexes.add(i);
+            } else {
+                results.set(i, ItemResult.failure(i, "posted_by does not refer to an existing account"));
+            }
+        }
+
+        if (!toCreate.isEmpty()) {
+            List<Message> created = messageDao.createAll(toCreate);
+            for (int j = 0; j < created.size(); j++) {
+                int index = toCreateIndexes.get(j);
+                results.set(index, ItemResult.success(index, created.get(j)));
+            }
+        }
+        return results;
     }
 
     /**
@@ -31,7 +203,40 @@ public class MessageService implements ServiceInterface<Message> {
      */
     @Override
     public Message update(Message message) {
-        return messageDao.update(message);
+        Message updated = messageDao.update(message);
+        afterWrite(updated);
+        return updated;
+    }
+
+    /**
+     * Replaces the text of an existing Message in a single statement.
+     *
+     * @param id   The ID of the Message to be updated.
+     * @param text The new message text.
+     * @return An Optional containing the full updated Message or empty if the
+     *         Message was not found.
+     */
+    public Optional<Message> updateText(int id, String text) {
+        Optional<Message> updated = messageDao.updateText(id, text);
+        updated.ifPresent(this::afterWrite);
+        return updated;
+    }
+
+    /**
+     * Replaces the text of several Messages in one transaction.
+     *
+     * @param messages The Message objects to be updated.
+     * @return One Optional per input Message, in input order, holding the
+     *         updated Message or empty if the Message was not found.
+     * @throws RuntimeException if the batch fails and has been rolled back
+     */
+    @Override
+    public List<Optional<Message>> updateAll(List<Message> messages) {
+        List<Optional<Message>> updated = messageDao.updateAll(messages);
+        for (Optional<Message> message : updated) {
+            message.ifPresent(this::afterWrite);
+        }
+        return updated;
     }
 
     /**
@@ -43,7 +248,26 @@ public class MessageService implements ServiceInterface<Message> {
      */
     @Override
     public Optional<Message> delete(int id) {
-        return messageDao.delete(id);
+        Optional<Message> deleted = messageDao.delete(id);
+        deleted.ifPresent(this::afterWrite);
+        return deleted;
+    }
+
+    /**
+     * Deletes several Messages by their IDs in one statement.
+     *
+     * @param ids The IDs of the Messages to be deleted.
+     * @return One Optional per requested ID, in request order, holding the
+     *         deleted Message or empty if the Message was not found.
+     * @throws RuntimeException if the delete fails
+     */
+    @Override
+    public List<Optional<Message>> deleteAll(int[] ids) {
+        List<Optional<Message>> deleted = messageDao.deleteAll(ids);
+        for (Optional<Message> message : deleted) {
+            message.ifPresent(this::afterWrite);
+        }
+        return deleted;
     }
 
     /**
@@ -51,11 +275,73 @@ public class MessageService implements ServiceInterface<Message> {
      *
      * @param id The ID of the Message to be retrieved.
      * @return An Optional containing the found Message or empty if the Message is
-     *         not found.
+     *         not found. The Message is a copy, so callers may modify it.
      */
     @Override
     public Optional<Message> get(int id) {
-        return messageDao.get(id);
+        Message cached = messageCache.get(id, key -> messageDao.get(key).orElse(null));
+        return Optional.ofNullable(cached).map(MessageService::copy);
+    }
+
+    /**
+     * Retrieves many Messages by their IDs. IDs found in the message cache are
+     * answered from memory; all the others are read with one database query.
+     *
+     * @param ids The IDs of the Messages to be retrieved; may contain repeats.
+     * @return One Optional per requested ID, in request order, holding a copy
+     *         of the Message or empty if there is no Message with that ID.
+     */
+    @Override
+    public List<Optional<Message>> getMany(int[] ids) {
+        List<Integer> keys = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            keys.add(id);
+        }
+        Map<Integer, Message> found = messageCache.getAll(keys, this::loadMany);
+        List<Optional<Message>> messages = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            messages.add(Optional.ofNullable(found.get(id)).map(MessageService::copy));
+        }
+        return messages;
+    }
+
+    private Map<Integer, Message> loadMany(Set<Integer> ids) {
+        int[] missing = new int[ids.size()];
+        int i = 0;
+        for (int id : ids) {
+            missing[i++] = id;
+        }
+        Map<Integer, Message> loaded = new HashMap<>();
+        for (Optional<Message> message : messageDao.getMany(missing)) {
+            message.ifPresent(m -> loaded.put(m.getMessage_id(), m));
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns a stamp that changes whenever any message is created, updated or
+     * deleted through this service. Read it before reading the data it
+     * describes: a write landing in between then makes the stamp older than
+     * the data, which can only cause an extra full response, never a stale one.
+     *
+     * @return an opaque version stamp for the whole message table
+     */
+    public String getVersionStamp() {
+        return Long.toHexString(versionEpoch) + "-" + version.get();
+    }
+
+    /**
+     * @return hit, miss, eviction and memory figures for the message cache
+     */
+    public CacheStats getCacheStats() {
+        return messageCache.stats();
+    }
+
+    /**
+     * @return hit, miss, eviction and memory figures for the timeline cache
+     */
+    public CacheStats getTimelineCacheStats() {
+        return timelineCache.stats();
     }
 
     /**
@@ -71,11 +357,144 @@ public class MessageService implements ServiceInterface<Message> {
     /**
      * Retrieves all messages posted by a specific user.
      *
+     * Served from the timeline cache when possible.
+     *
      * @param id The ID of the user whose messages are to be retrieved.
-     * @return A List of Message objects posted by the specified user.
+     * @return A List of Message objects posted by the specified user. The
+     *         messages are copies, so callers may modify them.
      */
     public List<Message> getAllByUserId(int id) {
-        return messageDao.getAllByUserId(id);
+        List<Message> timeline = getTimeline(id);
+        if (timeline == null) {
+            return messageDao.getAllByUserId(id);
+        }
+        List<Message> messages = new ArrayList<>(timeline.size());
+        for (Message message : timeline) {
+            messages.add(copy(message));
+        }
+        return messages;
+    }
+
+    /**
+     * Retrieves one page of Messages ordered by message_id.
+     *
+     * @param afterId  Only return messages with a greater id, or null.
+     * @param beforeId Only return messages with a smaller id, or null.
+     * @param limit    The requested page size, or null for the default.
+     *                 Sizes above the configured maximum are clamped.
+     * @return The page of messages and the cursor for the next page.
+     * @throws IllegalArgumentException if limit is less than 1
+     */
+    public Page<Message> getPage(Integer afterId, Integer beforeId, Integer limit) {
+        return messageDao.getPage(afterId, beforeId, resolvePageSize(limit));
+    }
+
+    /**
+     * Retrieves one page of the messages posted by a specific user, ordered by
+     * message_id.
+     *
+     * @param id       The ID of the user whose messages are to be retrieved.
+     * @param afterId  Only return messages with a greater id, or null.
+     * @param beforeId Only return messages with a smaller id, or null.
+     * @param limit    The requested page size, or null for the default.
+     *                 Sizes above the configured maximum are clamped.
+     * @return The page of messages and the cursor for the next page.
+     * @throws IllegalArgumentException if limit is less than 1
+     */
+    public Page<Message> getPageByUserId(int id, Integer afterId, Integer beforeId, Integer limit) {
+        return messageDao.getPageByUserId(id, afterId, beforeId, resolvePageSize(limit));
+    }
+
+    /**
+     * Streams every Message to the handler without holding them all in memory.
+     *
+     * @param handler Receives each message in ascending id order.
+     * @throws IOException if the handler fails to write a message
+     */
+    public void streamAll(RowHandler<Message> handler) throws IOException {
+        messageDao.streamAll(handler);
+    }
+
+    /**
+     * Streams the messages posted by a specific user to the handler. Cached
+     * timelines are replayed from memory; timelines too long to cache are
+     * streamed from the database without holding them all in memory.
+     *
+     * @param id      The ID of the user whose messages are to be streamed.
+     * @param handler Receives each message in ascending id order. Cached
+     *                messages are shared, so the handler must not modify them.
+     * @throws IOException if the handler fails to write a message
+     */
+    public void streamAllByUserId(int id, RowHandler<Message> handler) throws IOException {
+        List<Message> timeline = getTimeline(id);
+        if (timeline == null) {
+            messageDao.streamAllByUserId(id, handler);
+            return;
+        }
+        for (Message message : timeline) {
+            handler.handle(message);
+        }
+    }
+
+    /**
+     * @param id The ID of the account.
+     * @return the account's cached timeline, loading it on a miss, or null if
+     *         it is too long to cache
+     */
+    private List<Message> getTimeline(int id) {
+        if (!TIMELINE_CACHE_ENABLED) {
+            return null;
+        }
+        List<Message> timeline = timelineCache.get(id, this::loadTimeline);
+        return timeline == TIMELINE_TOO_LONG ? null : timeline;
+    }
+
+    private List<Message> loadTimeline(int id) {
+        Page<Message> page = messageDao.getPageByUserId(id, null, null, TIMELINE_MAX_MESSAGES);
+        if (page.getNextCursor() != null) {
+            return TIMELINE_TOO_LONG;
+        }
+        return List.copyOf(page.getItems());
+    }
+
+    /**
+     * Brings the caches and the version stamp up to date after a message has
+     * been written. Must run after the write has committed.
+     */
+    private void afterWrite(Message message) {
+        messageCache.invalidate(message.getMessage_id());
+        timelineCache.invalidate(message.getPosted_by());
+        version.incrementAndGet();
+    }
+
+    private static Message copy(Message message) {
+        return new Message(message.getMessage_id(), message.getPosted_by(),
+                message.getMessage_text(), message.getTime_posted_epoch());
+    }
+
+    // object header and fields plus the text's String and backing array
+    private static long estimateBytes(Message message) {
+        String text = message.getMessage_text();
+        return 32 + 40 + (text == null ? 0 : 2L * text.length());
+    }
+
+    // list header and backing array plus each message
+    private static long estimateBytes(List<Message> messages) {
+        long bytes = 32 + 8L * messages.size();
+        for (Message message : messages) {
+            bytes += estimateBytes(message);
+        }
+        return bytes;
+    }
+
+    private int resolvePageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
     }
 
     /**
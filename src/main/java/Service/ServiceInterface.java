@@ -19,4 +19,15 @@ public interface ServiceInterface<T> {
     Optional<T> get(int id);
 
     List<T> getAll();
+
+    // Batch versions of the above, with one result per requested item in
+    // request order. See DaoInterface for the transaction guarantees.
+
+    List<Optional<T>> getMany(int[] ids);
+
+    List<T> createAll(List<T> ts);
+
+    List<Optional<T>> updateAll(List<T> ts);
+
+    List<Optional<T>> deleteAll(int[] ids);
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+package Util;
+
+import Model.Account;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Hand-written JSON conversion for Account, registered by JsonMappers.
+ * The field names match the ones Jackson derives from Account's getters.
+ */
+public class AccountJson {
+
+    private AccountJson() {
+    }
+
+    /**
+     * Writes an account as a JSON object.
+     *
+     * @param generator The generator to write to.
+     * @param account   The account to write.
+     * @throws IOException if writing fails
+     */
+    public static void write(JsonGenerator generator, Account account) throws IOException {
+        generator.writeStartObject(account);
+        generator.writeNumberField("account_id", account.getAccount_id());
+        generator.writeStringField("username", account.getUsername());
+        generator.writeStringField("password", account.getPassword());
+        generator.writeEndObject();
+    }
+
+    /**
+     * Serializes an Account without reflection.
+     */
+    public static class Serializer extends StdSerializer<Account> {
+        private static final long serialVersionUID = 1L;
+
+        public Serializer() {
+            super(Account.class);
+        }
+
+        @Override
+        public void serialize(Account account, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            write(generator, account);
+        }
+    }
+
+    /**
+     * Deserializes an Account without reflection. Missing fields keep their
+     * defaults; unknown fields are reported like Jackson's bean mapping does.
+     */
+    public static class Deserializer extends StdDeserializer<Account> {
+        private static final long serialVersionUID = 1L;
+
+        public Deserializer() {
+            super(Account.class);
+        }
+
+        @Override
+        public Account deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (!p.isExpectedStartObjectToken()) {
+                return (Account) ctxt.handleUnexpectedToken(Account.class, p);
+            }
+            Account account = new Account();
+            String field;
+            while ((field = p.nextFieldName()) != null) {
+                p.nextToken();
+                switch (field) {
+                    case "account_id":
+                        account.setAccount_id(JsonMappers.readInt(p, ctxt));
+                        break;
+                    case "username":
+                        account.setUsername(JsonMappers.readString(p, ctxt));
+                        break;
+                    case "password":
+                        account.setPassword(JsonMappers.readString(p, ctxt));
+                        break;
+                    default:
+                        ctxt.handleUnknownProperty(p, this, Account.class, field);
+                        break;
+                }
+            }
+            return account;
+        }
+    }
+}
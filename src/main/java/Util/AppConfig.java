@@ -0,0 +1,74 @@
+package Util;
+
+/**
+ * Central place for reading tunable settings.
+ * Every setting is a JVM system property prefixed with "socialmedia."
+ * (e.g. -Dsocialmedia.pool.maxSize=20). A missing or malformed value
+ * falls back to the default supplied by the caller.
+ */
+public class AppConfig {
+    private static final String PREFIX = "socialmedia.";
+
+    private AppConfig() {
+    }
+
+    /**
+     * Reads an int setting.
+     *
+     * @param name         The setting name without the "socialmedia." prefix.
+     * @param defaultValue The value to use when the setting is absent or invalid.
+     * @return The configured value or the default.
+     */
+    public static int getInt(String name, int defaultValue) {
+        String value = System.getProperty(PREFIX + name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads a long setting.
+     *
+     * @param name         The setting name without the "socialmedia." prefix.
+     * @param defaultValue The value to use when the setting is absent or invalid.
+     * @return The configured value or the default.
+     */
+    public static long getLong(String name, long defaultValue) {
+        String value = System.getProperty(PREFIX + name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads a boolean setting. Only "true" and "false" (any case) are recognised.
+     *
+     * @param name         The setting name without the "socialmedia." prefix.
+     * @param defaultValue The value to use when the setting is absent or invalid.
+     * @return The configured value or the default.
+     */
+    public static boolean getBoolean(String name, boolean defaultValue) {
+        String value = System.getProperty(PREFIX + name);
+        if (value == null) {
+            return defaultValue;
+        }
+        value = value.trim();
+        if (value.equalsIgnoreCase("true")) {
+            return true;
+        }
+        if (value.equalsIgnoreCase("false")) {
+            return false;
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,70 @@
+package Util;
+
+/**
+ * A point-in-time snapshot of an LruCache's counters.
+ */
+public class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long size;
+    private final long estimatedBytes;
+
+    /**
+     * @param hits           Lookups answered from the cache.
+     * @param misses         Lookups that had to load or found nothing.
+     * @param evictions      Entries dropped for size or age.
+     * @param size           Entries currently held.
+     * @param estimatedBytes Approximate heap used by the held entries.
+     */
+    public CacheStats(long hits, long misses, long evictions, long size, long estimatedBytes) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    /**
+     * @return lookups answered from the cache
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return lookups that had to load or found nothing
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return hits divided by all lookups, or 0 if there have been none
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return entries dropped because the cache was full or they expired
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return entries currently held
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return approximate heap used by the held entries, in bytes
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+}
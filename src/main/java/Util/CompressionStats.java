@@ -0,0 +1,77 @@
+package Util;
+
+/**
+ * A point-in-time snapshot of the response compression counters for one
+ * route.
+ */
+public class CompressionStats {
+    private final long compressed;
+    private final long skipped;
+    private final long bytesIn;
+    private final long bytesOut;
+    private final long compressionNanos;
+
+    /**
+     * @param compressed       Responses that were compressed.
+     * @param skipped          Responses sent as they were because they were under the size threshold.
+     * @param bytesIn          Bytes of compressed responses before compression.
+     * @param bytesOut         Bytes of compressed responses after compression.
+     * @param compressionNanos Time spent compressing, excluding time writing to the client.
+     */
+    public CompressionStats(long compressed, long skipped, long bytesIn, long bytesOut, long compressionNanos) {
+        this.compressed = compressed;
+        this.skipped = skipped;
+        this.bytesIn = bytesIn;
+        this.bytesOut = bytesOut;
+        this.compressionNanos = compressionNanos;
+    }
+
+    /**
+     * @return responses that were compressed
+     */
+    public long getCompressed() {
+        return compressed;
+    }
+
+    /**
+     * @return responses sent uncompressed because they were under the size threshold
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return bytes of compressed responses before compression
+     */
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    /**
+     * @return bytes of compressed responses after compression
+     */
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    /**
+     * @return bytes kept off the wire by compression
+     */
+    public long getBytesSaved() {
+        return bytesIn - bytesOut;
+    }
+
+    /**
+     * @return compressed size divided by original size, or 0 if nothing was compressed
+     */
+    public double getRatio() {
+        return bytesIn == 0 ? 0.0 : (double) bytesOut / bytesIn;
+    }
+
+    /**
+     * @return time spent compressing, in milliseconds
+     */
+    public double getCompressionMillis() {
+        return compressionNanos / 1_000_000.0;
+    }
+}
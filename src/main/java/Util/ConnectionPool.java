@@ -0,0 +1,308 @@
+package Util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+/**
+ * A small bounded JDBC connection pool.
+ *
+ * At most maxSize physical connections exist at once; a borrower that finds
+ * none free waits up to borrowTimeoutMillis before failing. Idle connections
+ * are kept in LIFO order so the hottest ones are reused, and a background
+ * sweep closes connections that have sat idle longer than idleTimeoutMillis
+ * while never dropping below minSize. Idle connections are optionally
+ * validated before being handed out again.
+ *
+ * Each physical connection may also carry an LRU cache of prepared
+ * statements (see StatementCache); hit and miss counts are summed across
+ * the whole pool.
+ */
+public class ConnectionPool {
+    private final DataSource dataSource;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final boolean validateOnBorrow;
+    private final int validationTimeoutSeconds = 2;
+    private final int statementCacheSize;
+
+    // one permit per connection that may be checked out at the same time
+    private final Semaphore permits;
+    // guarded by itself; head is the most recently returned connection
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicInteger waitingCount = new AtomicInteger();
+    private final AtomicInteger openCount = new AtomicInteger();
+    private final AtomicLong totalBorrows = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    /**
+     * Creates the pool and opens minSize connections up front.
+     *
+     * @param dataSource               Source of new physical connections.
+     * @param minSize                  Connections kept open even when idle.
+     * @param maxSize                  Upper bound on open connections.
+     * @param borrowTimeoutMillis      How long a borrower waits for a free connection.
+     * @param idleTimeoutMillis        How long a connection may sit idle before eviction.
+     * @param evictionIntervalMillis   How often the idle sweep runs.
+     * @param validateOnBorrow         Whether to check idle connections before reuse.
+     * @param statementCacheSize       Prepared statements cached per connection; 0 disables caching.
+     */
+    public ConnectionPool(DataSource dataSource, int minSize, int maxSize, long borrowTimeoutMillis,
+            long idleTimeoutMillis, long evictionIntervalMillis, boolean validateOnBorrow,
+            int statementCacheSize) {
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Pool sizes must satisfy 0 <= minSize <= maxSize and maxSize >= 1");
+        }
+        this.dataSource = dataSource;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validateOnBorrow = validateOnBorrow;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        fillToMinimum();
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::evictIdle, evictionIntervalMillis, evictionIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection. Closing the returned connection hands it back to
+     * the pool.
+     *
+     * @return a pooled connection
+     * @throws SQLException if no connection frees up within the borrow timeout
+     *                      or a new one cannot be opened
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool has been closed");
+        }
+        boolean acquired;
+        waitingCount.incrementAndGet();
+        try {
+            acquired = permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection", e);
+        } finally {
+            waitingCount.decrementAndGet();
+        }
+        if (!acquired) {
+            throw new SQLTimeoutException(
+                    "Timed out after " + borrowTimeoutMillis + " ms waiting for a pooled connection");
+        }
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = open();
+            }
+            activeCount.incrementAndGet();
+            totalBorrows.incrementAndGet();
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Called by a lease when its borrower closes it.
+     *
+     * @param pooled The connection being handed back.
+     */
+    void release(PooledConnection pooled) {
+        activeCount.decrementAndGet();
+        try {
+            if (!closed && pooled.resetForReuse()) {
+                synchronized (idle) {
+                    idle.addFirst(pooled);
+                }
+            } else {
+                discard(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes connections that have been idle longer than the idle timeout,
+     * keeping at least minSize open, then tops the pool back up to minSize.
+     */
+    void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        List<PooledConnection> evicted = new ArrayList<>();
+        synchronized (idle) {
+            // the tail holds the connections that have been idle the longest
+            Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+            while (oldestFirst.hasNext() && openCount.get() - evicted.size() > minSize) {
+                PooledConnection pooled = oldestFirst.next();
+                if (pooled.getLastReturnedMillis() >= cutoff) {
+                    break;
+                }
+                oldestFirst.remove();
+                evicted.add(pooled);
+            }
+        }
+        for (PooledConnection pooled : evicted) {
+            discard(pooled);
+        }
+        fillToMinimum();
+    }
+
+    /**
+     * Closes every idle connection and stops the eviction sweep. Connections
+     * that are still checked out are closed as they are returned.
+     */
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        List<PooledConnection> toClose;
+        synchronized (idle) {
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+        }
+        for (PooledConnection pooled : toClose) {
+            discard(pooled);
+        }
+    }
+
+    /**
+     * @return the number of connections currently checked out
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    /**
+     * @return the number of open connections waiting in the pool
+     */
+    public int getIdleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    /**
+     * @return the number of threads currently blocked waiting for a connection
+     */
+    public int getWaitingCount() {
+        return waitingCount.get();
+    }
+
+    /**
+     * @return the total number of successful borrows since the pool was created
+     */
+    public long getTotalBorrows() {
+        return totalBorrows.get();
+    }
+
+    /**
+     * @return the number of physical connections currently open
+     */
+    public int getOpenCount() {
+        return openCount.get();
+    }
+
+    /**
+     * @return the number of prepareStatement calls served from a statement cache
+     */
+    public long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    /**
+     * @return the number of prepareStatement calls that had to prepare a new statement
+     */
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+    /**
+     * @return the configured maximum number of connections
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    private PooledConnection takeIdle() {
+        while (true) {
+            PooledConnection pooled;
+            synchronized (idle) {
+                pooled = idle.pollFirst();
+            }
+            if (pooled == null) {
+                return null;
+            }
+            if (!validateOnBorrow || pooled.isUsable(validationTimeoutSeconds)) {
+                return pooled;
+            }
+            discard(pooled);
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        StatementCache statementCache = statementCacheSize > 0
+                ? new StatementCache(statementCacheSize, statementCacheHits, statementCacheMisses)
+                : null;
+        PooledConnection pooled = new PooledConnection(this, dataSource.getConnection(), statementCache);
+        openCount.incrementAndGet();
+        return pooled;
+    }
+
+    private void discard(PooledConnection pooled) {
+        openCount.decrementAndGet();
+        pooled.closePhysical();
+    }
+
+    private void fillToMinimum() {
+        while (!closed && openCount.get() < minSize) {
+            // only top up with permits to spare so we never exceed maxSize
+            if (!permits.tryAcquire()) {
+                return;
+            }
+            try {
+                PooledConnection pooled = open();
+                pooled.resetForReuse();
+                synchronized (idle) {
+                    idle.addLast(pooled);
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@ import java.io.FileReader;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 import org.h2.jdbcx.JdbcDataSource;
 import org.h2.tools.RunScript;
@@ -34,26 +35,47 @@ public class ConnectionUtil {
 	private static String password = "sa";
 
 	/**
-	 * DataSource for pooling. Pooling enables the creation of multiple connections
-	 * when connections are closed.
+	 * DataSource used by the pool to open new physical connections.
 	 */
-	private static JdbcDataSource pool = new JdbcDataSource();
+	private static JdbcDataSource dataSource = new JdbcDataSource();
 
 	/**
-	 * static initialization block to establish credentials for DataSoure Pool
+	 * Bounded pool of connections. Closing a connection obtained from
+	 * getConnection() hands it back to the pool rather than closing it.
+	 */
+	private static ConnectionPool pool;
+
+	/**
+	 * static initialization block to establish credentials for the DataSource and
+	 * size the pool. Pool settings can be overridden with system properties, e.g.
+	 * -Dsocialmedia.pool.maxSize=20
 	 */
 	static {
-		pool.setURL(url);
-		pool.setUser(username);
-		pool.setPassword(password);
+		dataSource.setURL(url);
+		dataSource.setUser(username);
+		dataSource.setPassword(password);
+		pool = new ConnectionPool(dataSource,
+				AppConfig.getInt("pool.minSize", 2),
+				AppConfig.getInt("pool.maxSize", 10),
+				AppConfig.getLong("pool.borrowTimeoutMillis", 5000),
+				AppConfig.getLong("pool.idleTimeoutMillis", 300000),
+				AppConfig.getLong("pool.evictionIntervalMillis", 30000),
+				AppConfig.getBoolean("pool.validateOnBorrow", true),
+				AppConfig.getInt("pool.statementCacheSize", 32));
 	}
 
 	/**
-	 * @return an active connection to the database
+	 * @return an active connection to the database, borrowed from the pool. If a
+	 *         UnitOfWork is open on this thread its shared connection is returned
+	 *         instead.
 	 */
 	public static Connection getConnection() {
+		Connection shared = UnitOfWork.currentConnection();
+		if (shared != null) {
+			return shared;
+		}
 		try {
-			return pool.getConnection();
+			return pool.borrow();
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
@@ -61,10 +83,18 @@ public class ConnectionUtil {
 		return null;
 	}
 
+	/**
+	 * @return the connection pool, for reading its counters
+	 */
+	public static ConnectionPool getPool() {
+		return pool;
+	}
+
 	/**
 	 * For the purpose of testing, we will need to drop and recreate our database
 	 * tables to keep it consistent across all tests. The method will read the sql
-	 * file in resources. This will be performed before every test.
+	 * file in resources and then apply the schema migrations on top of it. This
+	 * will be performed before every test.
 	 */
 	public static void resetTestDatabase() {
 		Connection conn = null;
@@ -74,6 +104,13 @@ public class ConnectionUtil {
 			FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql");
 			RunScript.execute(conn, sqlReader);
 
+			// The script recreates the tables, so forget earlier migrations and
+			// re-apply them to the fresh schema
+			try (Statement stmt = conn.createStatement()) {
+				stmt.execute("DROP TABLE IF EXISTS schema_history");
+			}
+			MigrationRunner.migrate(conn);
+
 			// Hash the password
 			String hashedPassword = BCrypt.hashpw("password", BCrypt.gensalt());
 
@@ -0,0 +1,65 @@
+package Util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded worker pool for database work that follows, or leads into, an
+ * asynchronous step such as a PasswordHasher call.
+ *
+ * Running a query on a BCrypt worker would make that small pool wait on
+ * database I/O and pool checkout too, so async callers hop here instead. When
+ * the queue is full new work is refused with a RejectedExecutionException,
+ * the same as PasswordHasher.
+ *
+ * Sized with -Dsocialmedia.db.threads (default: the connection pool's
+ * maxSize, 10) and -Dsocialmedia.db.queueCapacity (default 256).
+ */
+public class DatabaseExecutor {
+    private static final int THREADS = Math.max(1,
+            AppConfig.getInt("db.threads", AppConfig.getInt("pool.maxSize", 10)));
+    private static final int QUEUE_CAPACITY = Math.max(1, AppConfig.getInt("db.queueCapacity", 256));
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+            THREADS, THREADS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            new WorkerFactory(),
+            new ThreadPoolExecutor.AbortPolicy());
+
+    private DatabaseExecutor() {
+    }
+
+    /**
+     * @return the executor, for CompletableFuture's *Async methods; its
+     *         execute throws RejectedExecutionException when the queue is full
+     */
+    public static Executor get() {
+        return EXECUTOR;
+    }
+
+    /**
+     * @return the number of tasks waiting for a worker
+     */
+    public static int getQueuedCount() {
+        return EXECUTOR.getQueue().size();
+    }
+
+    /**
+     * Creates named daemon worker threads so the pool never keeps the JVM alive.
+     */
+    private static class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "db-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package Util;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A thread-safe set of non-negative int IDs backed by a BitSet.
+ *
+ * Auto-increment keys are dense, so one bit per possible ID is far smaller
+ * than a set of boxed Integers and a lookup is a single array read. Lookups
+ * share a read lock; changes take the write lock.
+ */
+public class IdSet {
+    private final BitSet bits = new BitSet();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * @param id The ID to look for.
+     * @return true if the ID is in the set
+     */
+    public boolean contains(int id) {
+        if (id < 0) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return bits.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds an ID. Negative IDs are ignored.
+     *
+     * @param id The ID to add.
+     */
+    public void add(int id) {
+        if (id < 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            bits.set(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an ID.
+     *
+     * @param id The ID to remove.
+     */
+    public void remove(int id) {
+        if (id < 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            bits.clear(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the whole contents of the set in one step, so readers see
+     * either the old IDs or the new ones.
+     *
+     * @param ids The IDs the set should hold.
+     */
+    public void replaceAll(Collection<Integer> ids) {
+        BitSet replacement = new BitSet();
+        for (int id : ids) {
+            if (id >= 0) {
+                replacement.set(id);
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            bits.clear();
+            bits.or(replacement);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of IDs in the set
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return bits.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package Util;
+
+import Model.Account;
+import Model.Message;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import java.io.IOException;
+
+/**
+ * Builds the ObjectMappers shared by every request and response: one for
+ * JSON and one for CBOR, with the same model serializers.
+ *
+ * Message and Account are read and written by the hand-written serializers
+ * in MessageJson and AccountJson instead of Jackson's reflective bean
+ * mapping, so converting a model touches its fields directly and allocates
+ * nothing beyond the object itself. Lists and arrays of models reuse the
+ * same serializers for every element.
+ */
+public class JsonMappers {
+
+    private JsonMappers() {
+    }
+
+    /**
+     * @return a new JSON ObjectMapper with the model serializers registered
+     */
+    public static ObjectMapper create() {
+        return new ObjectMapper().registerModule(modelModule());
+    }
+
+    /**
+     * @return a new CBOR ObjectMapper with the model serializers registered
+     */
+    public static ObjectMapper createCbor() {
+        return new CBORMapper().registerModule(modelModule());
+    }
+
+    private static SimpleModule modelModule() {
+        SimpleModule models = new SimpleModule("socialmedia-models");
+        models.addSerializer(Message.class, new MessageJson.Serializer());
+        models.addDeserializer(Message.class, new MessageJson.Deserializer());
+        models.addSerializer(Account.class, new AccountJson.Serializer());
+        models.addDeserializer(Account.class, new AccountJson.Deserializer());
+        return models;
+    }
+
+    /**
+     * Reads the current value as an int, coercing the way Jackson's default
+     * mapping does: null becomes 0, floats are truncated and numeric strings
+     * are parsed.
+     *
+     * @param p    The parser, positioned on the value.
+     * @param ctxt The deserialization context, used to report bad input.
+     * @return the int value
+     * @throws IOException if the value cannot be read as an int
+     */
+    static int readInt(JsonParser p, DeserializationContext ctxt) throws IOException {
+        switch (p.currentToken()) {
+            case VALUE_NUMBER_INT:
+                return p.getIntValue();
+            case VALUE_NUMBER_FLOAT:
+                return p.getValueAsInt();
+            case VALUE_NULL:
+                return 0;
+            case VALUE_STRING:
+                String text = p.getText().trim();
+                try {
+                    return Integer.parseInt(text);
+                } catch (NumberFormatException e) {
+                    return (Integer) ctxt.handleWeirdStringValue(int.class, text, "not a valid int value");
+                }
+            default:
+                return (Integer) ctxt.handleUnexpectedToken(int.class, p);
+        }
+    }
+
+    /**
+     * Reads the current value as a long, with the same coercions as readInt.
+     *
+     * @param p    The parser, positioned on the value.
+     * @param ctxt The deserialization context, used to report bad input.
+     * @return the long value
+     * @throws IOException if the value cannot be read as a long
+     */
+    static long readLong(JsonParser p, DeserializationContext ctxt) throws IOException {
+        switch (p.currentToken()) {
+            case VALUE_NUMBER_INT:
+                return p.getLongValue();
+            case VALUE_NUMBER_FLOAT:
+                return p.getValueAsLong();
+            case VALUE_NULL:
+                return 0L;
+            case VALUE_STRING:
+                String text = p.getText().trim();
+                try {
+                    return Long.parseLong(text);
+                } catch (NumberFormatException e) {
+                    return (Long) ctxt.handleWeirdStringValue(long.class, text, "not a valid long value");
+                }
+            default:
+                return (Long) ctxt.handleUnexpectedToken(long.class, p);
+        }
+    }
+
+    /**
+     * Reads the current value as a String. Other scalars are converted to
+     * their text, as Jackson's default mapping does.
+     *
+     * @param p    The parser, positioned on the value.
+     * @param ctxt The deserialization context, used to report bad input.
+     * @return the String value, or null for a JSON null
+     * @throws IOException if the value is an object or array
+     */
+    static String readString(JsonParser p, DeserializationContext ctxt) throws IOException {
+        switch (p.currentToken()) {
+            case VALUE_STRING:
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                return p.getText();
+            case VALUE_NULL:
+                return null;
+            default:
+                return (String) ctxt.handleUnexpectedToken(String.class, p);
+        }
+    }
+}
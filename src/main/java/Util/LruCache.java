@@ -0,0 +1,408 @@
+package Util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A bounded, concurrent, read-through cache with least-recently-used eviction
+ * and a time-to-live on every entry.
+ *
+ * Keys are spread over independently locked segments, each an access-ordered
+ * LinkedHashMap, so threads working on different keys rarely contend. A
+ * weigher estimates the heap held by each value, which is reported alongside
+ * hit, miss and eviction counts.
+ *
+ * Read-through loads are single-flight: while one thread is loading a key,
+ * other threads asking for the same key wait for that load instead of
+ * starting their own.
+ *
+ * A cache created with maxEntries of 0 is disabled: it never stores anything
+ * and every read-through call goes straight to the loader.
+ *
+ * @param <K> Type of the cache keys.
+ * @param <V> Type of the cached values.
+ */
+public class LruCache<K, V> {
+    // rough per-entry cost of the map node, entry object and boxed key
+    private static final long ENTRY_OVERHEAD_BYTES = 96;
+    private static final int SEGMENT_COUNT = 16;
+
+    private final Segment<K, V>[] segments;
+    private final boolean enabled;
+    private final long maxWeight;
+    private final long ttlNanos;
+    private final ToLongFunction<? super V> weigher;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicLong weight = new AtomicLong();
+
+    /**
+     * @param maxEntries Most entries held at once; 0 disables the cache.
+     * @param ttlMillis  How long an entry stays valid after it is stored.
+     * @param weigher    Estimates the heap size of a value in bytes.
+     */
+    public LruCache(int maxEntries, long ttlMillis, ToLongFunction<? super V> weigher) {
+        this(maxEntries, Long.MAX_VALUE, ttlMillis, weigher);
+    }
+
+    /**
+     * Creates a cache that is also bounded by the total weight of its values.
+     * The weight bound is approximate: a store evicts least recently used
+     * entries from its own segment only, and always keeps the entry it just
+     * stored.
+     *
+     * @param maxEntries Most entries held at once; 0 disables the cache.
+     * @param maxWeight  Most total weight, as measured by the weigher, held at once.
+     * @param ttlMillis  How long an entry stays valid after it is stored.
+     * @param weigher    Estimates the heap size of a value in bytes.
+     */
+    public LruCache(int maxEntries, long maxWeight, long ttlMillis, ToLongFunction<? super V> weigher) {
+        this.enabled = maxEntries > 0;
+        this.maxWeight = maxWeight;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.weigher = weigher;
+        int perSegment = Math.max(1, (maxEntries + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+        this.segments = newSegments(SEGMENT_COUNT);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment<>(perSegment);
+        }
+    }
+
+    /**
+     * Looks a key up without loading it.
+     *
+     * @param key The key to look up.
+     * @return the cached value, or null if absent or expired
+     */
+    public V get(K key) {
+        if (!enabled) {
+            misses.increment();
+            return null;
+        }
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            Entry<V> entry = segment.map.get(key);
+            if (entry != null && entry.expiresAtNanos - System.nanoTime() > 0) {
+                hits.increment();
+                return entry.value;
+            }
+            if (entry != null) {
+                removeEntry(segment, key, entry);
+                evictions.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Looks a key up, loading and caching it on a miss. A null from the loader
+     * is returned but not cached. The loader runs without holding any lock.
+     * Concurrent misses on the same key share a single call to the loader. If
+     * the key is invalidated while the loader runs, its result still goes to
+     * the threads already waiting for it but is not cached, and later callers
+     * start a fresh load, so a slow load can never resurrect stale data.
+     *
+     * @param key    The key to look up.
+     * @param loader Produces the value on a miss.
+     * @return the cached or freshly loaded value, or null
+     * @throws RuntimeException whatever the loader threw, in every waiting thread
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        if (!enabled) {
+            misses.increment();
+            return loader.apply(key);
+        }
+        Segment<K, V> segment = segmentFor(key);
+        CompletableFuture<V> inFlight;
+        CompletableFuture<V> load = null;
+        long generation = 0;
+        synchronized (segment) {
+            Entry<V> entry = segment.map.get(key);
+            if (entry != null && entry.expiresAtNanos - System.nanoTime() > 0) {
+                hits.increment();
+                return entry.value;
+            }
+            if (entry != null) {
+                removeEntry(segment, key, entry);
+                evictions.increment();
+            }
+            misses.increment();
+            inFlight = segment.loading.get(key);
+            if (inFlight == null) {
+                load = new CompletableFuture<>();
+                segment.loading.put(key, load);
+                generation = segment.generation;
+            }
+        }
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+
+        V loaded;
+        try {
+            loaded = loader.apply(key);
+        } catch (RuntimeException | Error e) {
+            synchronized (segment) {
+                segment.loading.remove(key, load);
+            }
+            load.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (segment) {
+            segment.loading.remove(key, load);
+            if (loaded != null && segment.generation == generation) {
+                store(segment, key, loaded);
+            }
+        }
+        load.complete(loaded);
+        return loaded;
+    }
+
+    /**
+     * Looks many keys up at once, loading all the misses with one call to the
+     * loader. Values the loader returns are cached unless their segment saw an
+     * invalidation after the miss was recorded, so, as with get(K, loader),
+     * a slow load never stores stale data. Bulk loads are not single-flight.
+     *
+     * @param keys   The keys to look up.
+     * @param loader Given the keys that missed, returns the values it found;
+     *               keys it leaves out are treated as absent.
+     * @return the values found, keyed by key; absent keys are left out
+     * @throws RuntimeException whatever the loader threw
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys,
+            Function<? super Set<K>, ? extends Map<K, ? extends V>> loader) {
+        Map<K, V> found = new HashMap<>();
+        Set<K> missing = new LinkedHashSet<>();
+        Map<Segment<K, V>, Long> generations = new IdentityHashMap<>();
+        for (K key : keys) {
+            if (found.containsKey(key) || missing.contains(key)) {
+                continue;
+            }
+            if (!enabled) {
+                misses.increment();
+                missing.add(key);
+                continue;
+            }
+            Segment<K, V> segment = segmentFor(key);
+            synchronized (segment) {
+                Entry<V> entry = segment.map.get(key);
+                if (entry != null && entry.expiresAtNanos - System.nanoTime() > 0) {
+                    hits.increment();
+                    found.put(key, entry.value);
+                    continue;
+                }
+                if (entry != null) {
+                    removeEntry(segment, key, entry);
+                    evictions.increment();
+                }
+                misses.increment();
+                missing.add(key);
+                generations.putIfAbsent(segment, segment.generation);
+            }
+        }
+        if (missing.isEmpty()) {
+            return found;
+        }
+
+        Map<K, ? extends V> loaded = loader.apply(Collections.unmodifiableSet(missing));
+        for (K key : missing) {
+            V value = loaded.get(key);
+            if (value == null) {
+                continue;
+            }
+            found.put(key, value);
+            if (enabled) {
+                Segment<K, V> segment = segmentFor(key);
+                synchronized (segment) {
+                    if (segment.generation == generations.get(segment)) {
+                        store(segment, key, value);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Stores a value, replacing any existing one.
+     *
+     * @param key   The key to store under.
+     * @param value The value to store; must not be null.
+     */
+    public void put(K key, V value) {
+        if (!enabled) {
+            return;
+        }
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            store(segment, key, value);
+        }
+    }
+
+    /**
+     * Removes a key. Loads of any key in the same segment that are already in
+     * flight will not be cached, and the next lookup of this key starts a new
+     * load rather than joining one that may have read stale data.
+     *
+     * @param key The key to remove.
+     */
+    public void invalidate(K key) {
+        if (!enabled) {
+            return;
+        }
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.generation++;
+            segment.loading.remove(key);
+            Entry<V> entry = segment.map.get(key);
+            if (entry != null) {
+                removeEntry(segment, key, entry);
+            }
+        }
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public void invalidateAll() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.generation++;
+                segment.loading.clear();
+                for (Entry<V> entry : segment.map.values()) {
+                    weight.addAndGet(-entry.weight);
+                }
+                segment.map.clear();
+            }
+        }
+    }
+
+    /**
+     * @return the number of entries currently held, including any that have
+     *         expired but not yet been swept
+     */
+    public long size() {
+        long size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.map.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return a snapshot of the hit, miss, eviction and size counters
+     */
+    public CacheStats stats() {
+        long size = size();
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size,
+                weight.get() + size * ENTRY_OVERHEAD_BYTES);
+    }
+
+    // generic arrays cannot be created directly; every element is set to a Segment<K, V> before use
+    @SuppressWarnings("unchecked")
+    private static <K, V> Segment<K, V>[] newSegments(int count) {
+        return (Segment<K, V>[]) new Segment<?, ?>[count];
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[hash & (SEGMENT_COUNT - 1)];
+    }
+
+    private V await(CompletableFuture<V> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    // caller holds the segment lock
+    private void store(Segment<K, V> segment, K key, V value) {
+        long entryWeight = weigher.applyAsLong(value);
+        Entry<V> previous = segment.map.put(key,
+                new Entry<>(value, System.nanoTime() + ttlNanos, entryWeight));
+        weight.addAndGet(entryWeight - (previous == null ? 0 : previous.weight));
+
+        // drop least recently used entries, never the one just stored
+        Iterator<Map.Entry<K, Entry<V>>> lruFirst = segment.map.entrySet().iterator();
+        while (lruFirst.hasNext() && isOverBound(segment)) {
+            Map.Entry<K, Entry<V>> eldest = lruFirst.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            lruFirst.remove();
+            weight.addAndGet(-eldest.getValue().weight);
+            evictions.increment();
+        }
+    }
+
+    // caller holds the segment lock
+    private boolean isOverBound(Segment<K, V> segment) {
+        return segment.map.size() > segment.capacity || weight.get() > maxWeight;
+    }
+
+    // caller holds the segment lock
+    private void removeEntry(Segment<K, V> segment, K key, Entry<V> entry) {
+        segment.map.remove(key);
+        weight.addAndGet(-entry.weight);
+    }
+
+    /**
+     * One independently locked slice of the cache.
+     */
+    private static class Segment<K, V> {
+        final int capacity;
+        final LinkedHashMap<K, Entry<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+        final Map<K, CompletableFuture<V>> loading = new HashMap<>();
+        // bumped on every invalidation so in-flight loads know not to store
+        long generation;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+
+    /**
+     * A cached value with its expiry time and estimated size.
+     */
+    private static class Entry<V> {
+        final V value;
+        final long expiresAtNanos;
+        final long weight;
+
+        Entry(V value, long expiresAtNanos, long weight) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+            this.weight = weight;
+        }
+    }
+}
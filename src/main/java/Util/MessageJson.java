@@ -0,0 +1,98 @@
+package Util;
+
+import Model.Message;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Hand-written JSON conversion for Message, registered by JsonMappers.
+ * The field names match the ones Jackson derives from Message's getters.
+ */
+public class MessageJson {
+
+    private MessageJson() {
+    }
+
+    /**
+     * Writes a message as a JSON object. Also used directly by code that
+     * streams messages through a JsonGenerator.
+     *
+     * @param generator The generator to write to.
+     * @param message   The message to write.
+     * @throws IOException if writing fails
+     */
+    public static void write(JsonGenerator generator, Message message) throws IOException {
+        generator.writeStartObject(message);
+        generator.writeNumberField("message_id", message.getMessage_id());
+        generator.writeNumberField("posted_by", message.getPosted_by());
+        generator.writeStringField("message_text", message.getMessage_text());
+        generator.writeNumberField("time_posted_epoch", message.getTime_posted_epoch());
+        generator.writeEndObject();
+    }
+
+    /**
+     * Serializes a Message without reflection.
+     */
+    public static class Serializer extends StdSerializer<Message> {
+        private static final long serialVersionUID = 1L;
+
+        public Serializer() {
+            super(Message.class);
+        }
+
+        @Override
+        public void serialize(Message message, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            write(generator, message);
+        }
+    }
+
+    /**
+     * Deserializes a Message without reflection. Missing fields keep their
+     * defaults; unknown fields are reported like Jackson's bean mapping does.
+     */
+    public static class Deserializer extends StdDeserializer<Message> {
+        private static final long serialVersionUID = 1L;
+
+        public Deserializer() {
+            super(Message.class);
+        }
+
+        @Override
+        public Message deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (!p.isExpectedStartObjectToken()) {
+                return (Message) ctxt.handleUnexpectedToken(Message.class, p);
+            }
+            Message message = new Message();
+            String field;
+            while ((field = p.nextFieldName()) != null) {
+                p.nextToken();
+                switch (field) {
+                    case "message_id":
+                        message.setMessage_id(JsonMappers.readInt(p, ctxt));
+                        break;
+                    case "posted_by":
+                        message.setPosted_by(JsonMappers.readInt(p, ctxt));
+                        break;
+                    case "message_text":
+                        message.setMessage_text(JsonMappers.readString(p, ctxt));
+                        break;
+                    case "time_posted_epoch":
+                        message.setTime_posted_epoch(JsonMappers.readLong(p, ctxt));
+                        break;
+                    default:
+                        ctxt.handleUnknownProperty(p, this, Message.class, field);
+                        break;
+                }
+            }
+            return message;
+        }
+    }
+}
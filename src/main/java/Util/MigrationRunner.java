@@ -0,0 +1,245 @@
+package Util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.h2.tools.RunScript;
+
+/**
+ * Applies versioned schema migrations on startup.
+ *
+ * Scripts live in src/main/resources/db/migration and are listed, in order,
+ * in migrations.txt. Each script is named V(version)__(description).sql.
+ * Applied versions are recorded in the schema_history table together with a
+ * SHA-256 checksum of the script, so running the migrations again is a no-op
+ * and editing a script that has already been applied is reported as an error
+ * instead of silently diverging.
+ *
+ * A script and its schema_history row are committed together, but H2
+ * commits every DDL statement (CREATE, ALTER, DROP) as soon as it runs, so
+ * only data changes roll back when a script fails. The schema changes made
+ * before the failing statement stay, and with no history row the script runs
+ * again from the top next time. Scripts should therefore be safe to re-run,
+ * e.g. with IF NOT EXISTS, and the error names the script that was left
+ * partly applied.
+ */
+public class MigrationRunner {
+    private static final String MIGRATION_DIR = "db/migration/";
+    private static final String MANIFEST_NAME = "migrations.txt";
+
+    private MigrationRunner() {
+    }
+
+    /**
+     * Applies any pending migrations using a connection from ConnectionUtil.
+     *
+     * @return the number of migrations applied
+     * @throws IllegalStateException if a migration fails or an applied script
+     *                               no longer matches its recorded checksum
+     */
+    public static int migrate() {
+        Connection conn = null;
+        try {
+            conn = ConnectionUtil.getConnection();
+            return migrate(conn);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Schema migration failed", e);
+        } finally {
+            if (conn != null)
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+        }
+    }
+
+    /**
+     * Applies any pending migrations on the given connection, in manifest
+     * order. Each script's data changes commit together with its
+     * schema_history row; see the class comment for DDL.
+     *
+     * @param conn The connection to migrate with.
+     * @return the number of migrations applied
+     * @throws SQLException if a script fails, or the history table cannot be
+     *                      read or written
+     */
+    public static int migrate(Connection conn) throws SQLException {
+        return migrate(conn, MIGRATION_DIR);
+    }
+
+    /**
+     * @param migrationDir Classpath directory holding migrations.txt and the
+     *                     scripts it lists, ending in '/'.
+     */
+    static synchronized int migrate(Connection conn, String migrationDir) throws SQLException {
+        createHistoryTable(conn);
+        Map<Integer, String> applied = loadAppliedChecksums(conn);
+
+        int count = 0;
+        for (Migration migration : loadMigrations(migrationDir)) {
+            String recordedChecksum = applied.get(migration.version);
+            if (recordedChecksum != null) {
+                if (!recordedChecksum.equals(migration.checksum)) {
+                    throw new IllegalStateException("Migration " + migration.fileName
+                            + " has changed since it was applied (checksum mismatch)");
+                }
+                continue;
+            }
+            apply(conn, migration);
+            count++;
+        }
+        return count;
+    }
+
+    private static void createHistoryTable(Connection conn) throws SQLException {
+        Statement stmt = null;
+        try {
+            stmt = conn.createStatement();
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_history ("
+                    + "version int primary key, "
+                    + "description varchar(255), "
+                    + "checksum varchar(64), "
+                    + "applied_at bigint)");
+        } finally {
+            if (stmt != null)
+                stmt.close();
+        }
+    }
+
+    private static Map<Integer, String> loadAppliedChecksums(Connection conn) throws SQLException {
+        Map<Integer, String> applied = new HashMap<>();
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            pstmt = conn.prepareStatement("SELECT version, checksum FROM schema_history");
+            rs = pstmt.executeQuery();
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getString("checksum"));
+            }
+        } finally {
+            if (rs != null)
+                rs.close();
+            if (pstmt != null)
+                pstmt.close();
+        }
+        return applied;
+    }
+
+    private static void apply(Connection conn, Migration migration) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        PreparedStatement pstmt = null;
+        try {
+            conn.setAutoCommit(false);
+            RunScript.execute(conn, new StringReader(migration.script));
+
+            pstmt = conn.prepareStatement(
+                    "INSERT INTO schema_history (version, description, checksum, applied_at) VALUES (?, ?, ?, ?)");
+            pstmt.setInt(1, migration.version);
+            pstmt.setString(2, migration.description);
+            pstmt.setString(3, migration.checksum);
+            pstmt.setLong(4, System.currentTimeMillis() / 1000);
+            pstmt.executeUpdate();
+
+            conn.commit();
+        } catch (SQLException e) {
+            try {
+                conn.rollback();
+            } catch (SQLException rollbackFailure) {
+                e.addSuppressed(rollbackFailure);
+            }
+            throw new SQLException("Applying migration " + migration.fileName + " failed; schema changes it made"
+                    + " before the failure were committed by the database and it will run again from the start", e);
+        } finally {
+            if (pstmt != null)
+                pstmt.close();
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static List<Migration> loadMigrations(String migrationDir) {
+        List<Migration> migrations = new ArrayList<>();
+        int lastVersion = 0;
+        for (String line : readResource(migrationDir + MANIFEST_NAME).split("\\R")) {
+            String fileName = line.trim();
+            if (fileName.isEmpty() || fileName.startsWith("#")) {
+                continue;
+            }
+            Migration migration = new Migration(fileName, readResource(migrationDir + fileName));
+            if (migration.version <= lastVersion) {
+                throw new IllegalStateException("Migrations must be listed in increasing version order: " + fileName);
+            }
+            lastVersion = migration.version;
+            migrations.add(migration);
+        }
+        return migrations;
+    }
+
+    private static String readResource(String path) {
+        InputStream in = MigrationRunner.class.getClassLoader().getResourceAsStream(path);
+        if (in == null) {
+            throw new IllegalStateException("Missing migration resource " + path);
+        }
+        StringBuilder content = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                content.append(line).append('\n');
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read migration resource " + path, e);
+        }
+        return content.toString();
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A single migration script parsed from its file name and content.
+     */
+    private static class Migration {
+        final String fileName;
+        final int version;
+        final String description;
+        final String script;
+        final String checksum;
+
+        Migration(String fileName, String script) {
+            int separator = fileName.indexOf("__");
+            if (!fileName.startsWith("V") || separator < 2 || !fileName.endsWith(".sql")) {
+                throw new IllegalStateException("Migration names must look like V1__description.sql: " + fileName);
+            }
+            this.fileName = fileName;
+            this.version = Integer.parseInt(fileName.substring(1, separator));
+            this.description = fileName.substring(separator + 2, fileName.length() - 4).replace('_', ' ');
+            this.script = script;
+            this.checksum = sha256(script);
+        }
+    }
+}
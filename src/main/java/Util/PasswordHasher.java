@@ -0,0 +1,96 @@
+package Util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+/**
+ * Runs BCrypt hashing and verification on a dedicated, bounded worker pool.
+ *
+ * BCrypt is deliberately slow, so running it on request threads lets a burst
+ * of logins starve every other endpoint. Here it gets its own fixed set of
+ * threads and a bounded queue; when the queue is full new work is refused
+ * straight away with a RejectedExecutionException instead of piling up.
+ *
+ * Sized with -Dsocialmedia.bcrypt.threads (default: number of CPUs) and
+ * -Dsocialmedia.bcrypt.queueCapacity (default 64).
+ */
+public class PasswordHasher {
+    private static final int THREADS = Math.max(1,
+            AppConfig.getInt("bcrypt.threads", Runtime.getRuntime().availableProcessors()));
+    private static final int QUEUE_CAPACITY = Math.max(1, AppConfig.getInt("bcrypt.queueCapacity", 64));
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+            THREADS, THREADS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            new WorkerFactory(),
+            new ThreadPoolExecutor.AbortPolicy());
+
+    private PasswordHasher() {
+    }
+
+    /**
+     * Hashes a password with a fresh salt.
+     *
+     * @param password The plain text password.
+     * @return a future that completes with the BCrypt hash
+     * @throws RejectedExecutionException if the worker queue is full
+     */
+    public static CompletableFuture<String> hash(String password) {
+        return CompletableFuture.supplyAsync(() -> BCrypt.hashpw(password, BCrypt.gensalt()), EXECUTOR);
+    }
+
+    /**
+     * Checks a password against a stored hash.
+     *
+     * @param password The plain text password.
+     * @param hashed   The stored BCrypt hash.
+     * @return a future that completes with true if the password matches
+     * @throws RejectedExecutionException if the worker queue is full
+     */
+    public static CompletableFuture<Boolean> verify(String password, String hashed) {
+        return CompletableFuture.supplyAsync(() -> BCrypt.checkpw(password, hashed), EXECUTOR);
+    }
+
+    /**
+     * @return the number of workers, the most hashes worth having in flight
+     *         for one caller
+     */
+    public static int getThreadCount() {
+        return THREADS;
+    }
+
+    /**
+     * @return the number of hash or verify calls waiting for a worker
+     */
+    public static int getQueuedCount() {
+        return EXECUTOR.getQueue().size();
+    }
+
+    /**
+     * @return the number of workers currently hashing or verifying
+     */
+    public static int getActiveCount() {
+        return EXECUTOR.getActiveCount();
+    }
+
+    /**
+     * Creates named daemon worker threads so the pool never keeps the JVM alive.
+     */
+    private static class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "bcrypt-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A physical database connection owned by a ConnectionPool.
+ * Callers never see the physical connection directly. Each borrow hands out a
+ * fresh proxy (a "lease") whose close() returns the connection to the pool
+ * instead of closing it. Once a lease is closed it rejects further use, so a
+ * stale reference can never touch a connection that has been handed to
+ * someone else.
+ *
+ * When statement caching is enabled, prepareStatement(sql) and
+ * prepareStatement(sql, autoGeneratedKeys) are served from a StatementCache
+ * that lives as long as the physical connection.
+ */
+class PooledConnection {
+    private final ConnectionPool pool;
+    private final Connection physical;
+    // null when statement caching is disabled
+    private final StatementCache statementCache;
+    private volatile long lastReturnedMillis = System.currentTimeMillis();
+
+    PooledConnection(ConnectionPool pool, Connection physical, StatementCache statementCache) {
+        this.pool = pool;
+        this.physical = physical;
+        this.statementCache = statementCache;
+    }
+
+    /**
+     * @return a new proxy over the physical connection for a single borrower
+     */
+    Connection lease() {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new Lease());
+    }
+
+    /**
+     * @return the time this connection was last returned to the pool
+     */
+    long getLastReturnedMillis() {
+        return lastReturnedMillis;
+    }
+
+    /**
+     * Checks that the physical connection is still open and answering.
+     *
+     * @param timeoutSeconds How long the driver may take to answer.
+     * @return true if the connection can be handed out again
+     */
+    boolean isUsable(int timeoutSeconds) {
+        try {
+            return !physical.isClosed() && physical.isValid(timeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Puts the physical connection back into its default state so the next
+     * borrower does not inherit an open transaction.
+     *
+     * @return true if the connection is fit to go back into the pool
+     */
+    boolean resetForReuse() {
+        try {
+            if (physical.isClosed()) {
+                return false;
+            }
+            if (statementCache != null) {
+                statementCache.releaseAll();
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            physical.clearWarnings();
+            lastReturnedMillis = System.currentTimeMillis();
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Closes the underlying physical connection.
+     */
+    void closePhysical() {
+        if (statementCache != null) {
+            statementCache.closeAll();
+        }
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Invocation handler backing one borrower's view of the connection.
+     */
+    private class Lease implements InvocationHandler {
+        private boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        pool.release(PooledConnection.this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + physical + (closed ? ", returned" : "") + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if (statementCache != null && method.getName().equals("prepareStatement")
+                    && args[0] instanceof String) {
+                if (args.length == 1) {
+                    return statementCache.prepare(physical, (Connection) proxy, (String) args[0],
+                            Statement.NO_GENERATED_KEYS);
+                }
+                if (args.length == 2 && args[1] instanceof Integer) {
+                    return statementCache.prepare(physical, (Connection) proxy, (String) args[0],
+                            (Integer) args[1]);
+                }
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
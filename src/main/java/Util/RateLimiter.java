@@ -0,0 +1,123 @@
+package Util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A lock-free token bucket per key, for throttling by username, address or
+ * any other string.
+ *
+ * Each bucket is a single AtomicLong holding its "theoretical arrival time"
+ * (the generic cell rate algorithm): a request is allowed if, after adding one
+ * emission interval, that time is no more than capacity intervals ahead of
+ * now. Taking a token is one compare-and-set, so no thread ever blocks.
+ *
+ * A bucket whose arrival time has passed is full again and holds no state
+ * worth keeping. When the key map reaches maxKeys those idle buckets are
+ * dropped; if it is still full, the fullest tenth of the rest go too. Those
+ * are the keys charged least recently, which lose the least by starting over,
+ * while drained buckets, such as a username under attack, are kept. Every
+ * key still gets a bucket of its own, so a flood of made-up keys cannot
+ * throttle anyone else, and memory stays bounded.
+ */
+public class RateLimiter {
+    private final long emissionIntervalNanos;
+    private final long burstNanos;
+    private final int maxKeys;
+    private final boolean enabled;
+
+    // share of maxKeys dropped at once when the map is full of busy buckets
+    private static final int EVICT_DIVISOR = 10;
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final ReentrantLock cleanupLock = new ReentrantLock();
+
+    /**
+     * @param capacity        Most requests a key may make in a burst; 0 disables the limiter.
+     * @param refillPerMinute Tokens added back to each key's bucket per minute.
+     * @param maxKeys         Most keys tracked individually.
+     */
+    public RateLimiter(int capacity, double refillPerMinute, int maxKeys) {
+        this.enabled = capacity > 0 && refillPerMinute > 0;
+        this.emissionIntervalNanos = enabled ? (long) (60_000_000_000L / refillPerMinute) : 0;
+        this.burstNanos = emissionIntervalNanos * Math.max(capacity, 0);
+        this.maxKeys = Math.max(1, maxKeys);
+    }
+
+    /**
+     * Takes a token from the key's bucket if one is available.
+     *
+     * @param key The key to charge, e.g. a username or remote address.
+     * @return 0 if the request is allowed, otherwise how many nanoseconds
+     *         until the key will have a token again
+     */
+    public long tryAcquire(String key) {
+        if (!enabled) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        AtomicLong bucket = bucketFor(key == null ? "" : key, now);
+        while (true) {
+            long arrival = bucket.get();
+            long next = Math.max(arrival, now) + emissionIntervalNanos;
+            long ahead = next - now;
+            if (ahead > burstNanos) {
+                return ahead - burstNanos;
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @return the number of keys currently tracked
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    private AtomicLong bucketFor(String key, long now) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxKeys) {
+            makeRoom(now);
+        }
+        return buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+
+    /**
+     * Drops the buckets that have refilled completely and, if the map is
+     * still full, the fullest tenth of maxKeys, so the sort is paid once per
+     * many new keys. Only one thread cleans up at a time; others add their key
+     * without waiting, so the map can pass maxKeys by at most the number of
+     * concurrent callers.
+     */
+    private void makeRoom(long now) {
+        if (!cleanupLock.tryLock()) {
+            return;
+        }
+        try {
+            buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+            int excess = buckets.size() - maxKeys + 1;
+            if (excess <= 0) {
+                return;
+            }
+            // how far ahead of now each bucket is; the smallest are the fullest
+            long[] ahead = buckets.values().stream().mapToLong(bucket -> bucket.get() - now).toArray();
+            if (ahead.length == 0) {
+                return;
+            }
+            Arrays.sort(ahead);
+            int evict = Math.min(ahead.length, Math.max(excess, maxKeys / EVICT_DIVISOR));
+            long cutoff = ahead[evict - 1];
+            buckets.values().removeIf(bucket -> bucket.get() - now <= cutoff);
+        } finally {
+            cleanupLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package Util;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory store of opaque session tokens issued at login.
+ *
+ * A token is 32 random bytes from SecureRandom, base64url encoded, and maps to
+ * the account it was issued for. Tokens live in a ConcurrentHashMap, so
+ * validating one is a single lock-free lookup. Expiry slides: every
+ * successful validation pushes the expiry out by the full time-to-live.
+ *
+ * Expired tokens are rejected as soon as they are seen and removed in the
+ * background by a daemon sweeper thread, which walks the map without
+ * blocking request threads.
+ */
+public class SessionStore {
+    private static final int TOKEN_BYTES = 32;
+
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    private final long ttlNanos;
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * Creates the store and starts its sweeper thread.
+     *
+     * @param ttlMillis           How long a token stays valid after it was last used.
+     * @param sweepIntervalMillis How often expired tokens are removed.
+     */
+    public SessionStore(long ttlMillis, long sweepIntervalMillis) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, sweepIntervalMillis);
+        sweeper.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Issues a new token for an account.
+     *
+     * @param accountId The account the token identifies.
+     * @return the token
+     */
+    public String issue(int accountId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = encoder.encodeToString(bytes);
+        sessions.put(token, new Session(accountId, System.nanoTime() + ttlNanos));
+        return token;
+    }
+
+    /**
+     * Checks a token and, if it is still valid, extends its expiry.
+     *
+     * @param token The token presented by the client.
+     * @return the account ID the token was issued for, or empty if the token
+     *         is unknown or has expired
+     */
+    public OptionalInt validate(String token) {
+        if (token == null) {
+            return OptionalInt.empty();
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            return OptionalInt.empty();
+        }
+        long now = System.nanoTime();
+        if (session.expiresAtNanos - now <= 0) {
+            sessions.remove(token, session);
+            return OptionalInt.empty();
+        }
+        session.expiresAtNanos = now + ttlNanos;
+        return OptionalInt.of(session.accountId);
+    }
+
+    /**
+     * Invalidates a token.
+     *
+     * @param token The token to revoke.
+     */
+    public void revoke(String token) {
+        if (token != null) {
+            sessions.remove(token);
+        }
+    }
+
+    /**
+     * @return the number of tokens held, including expired ones not yet swept
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Stops the sweeper thread. Tokens already issued stay valid until they
+     * expire.
+     */
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Removes every expired token.
+     */
+    void sweep() {
+        long now = System.nanoTime();
+        sessions.values().removeIf(session -> session.expiresAtNanos - now <= 0);
+    }
+
+    /**
+     * The account behind a token and when the token expires.
+     */
+    private static class Session {
+        final int accountId;
+        // written by whichever request thread last validated the token
+        volatile long expiresAtNanos;
+
+        Session(int accountId, long expiresAtNanos) {
+            this.accountId = accountId;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
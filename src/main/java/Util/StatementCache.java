@@ -0,0 +1,244 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of prepared statements for a single physical connection.
+ *
+ * Statements are keyed by SQL text plus the generated-keys mode. A cached
+ * statement is handed out wrapped in a fresh proxy for each checkout, whose
+ * close() clears its parameters and marks it free instead of closing it, so
+ * the next prepareStatement call with the same SQL skips parsing and planning.
+ * If the same SQL is prepared again while the cached copy is still open,
+ * an ordinary uncached statement is returned.
+ */
+class StatementCache {
+    private final int capacity;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final Map<String, CachedStatement> statements;
+
+    /**
+     * @param capacity Maximum number of statements kept open.
+     * @param hits     Counter shared with the pool, bumped on every cache hit.
+     * @param misses   Counter shared with the pool, bumped on every cache miss.
+     */
+    StatementCache(int capacity, AtomicLong hits, AtomicLong misses) {
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= StatementCache.this.capacity) {
+                    return false;
+                }
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a cached statement for the SQL, preparing and caching a new one
+     * on a miss.
+     *
+     * @param physical          The connection that owns this cache.
+     * @param owner             The connection the borrower sees, returned by
+     *                          getConnection() on the statement.
+     * @param sql               The SQL text.
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS or NO_GENERATED_KEYS.
+     * @return a prepared statement whose close() returns it to the cache
+     * @throws SQLException if the statement cannot be prepared
+     */
+    synchronized PreparedStatement prepare(Connection physical, Connection owner, String sql, int autoGeneratedKeys)
+            throws SQLException {
+        String key = autoGeneratedKeys + ":" + sql;
+        CachedStatement cached = statements.get(key);
+        if (cached != null && !cached.isInUse() && !cached.statement.isClosed()) {
+            hits.incrementAndGet();
+            return cached.checkOut(owner);
+        }
+
+        misses.incrementAndGet();
+        PreparedStatement statement = physical.prepareStatement(sql, autoGeneratedKeys);
+        if (cached != null && cached.isInUse()) {
+            // the cached copy is busy, so this one lives and dies with its borrower
+            return statement;
+        }
+        CachedStatement fresh = new CachedStatement(statement);
+        statements.put(key, fresh);
+        return fresh.checkOut(owner);
+    }
+
+    /**
+     * Frees statements a borrower forgot to close before returning the
+     * connection to the pool.
+     */
+    synchronized void releaseAll() {
+        // removed after the loop, since the map cannot change while it is iterated
+        List<CachedStatement> failed = new ArrayList<>();
+        for (CachedStatement cached : statements.values()) {
+            if (!cached.checkIn()) {
+                failed.add(cached);
+            }
+        }
+        statements.values().removeAll(failed);
+    }
+
+    /**
+     * Closes every cached statement. Called before the physical connection
+     * is closed.
+     */
+    synchronized void closeAll() {
+        List<CachedStatement> toClose = new ArrayList<>(statements.values());
+        statements.clear();
+        for (CachedStatement cached : toClose) {
+            cached.closeQuietly();
+        }
+    }
+
+    /**
+     * One cached statement and the bookkeeping needed to share it. Each
+     * checkout gets a fresh proxy, like PooledConnection's leases, so a stale
+     * reference from an earlier borrower stays closed.
+     */
+    private class CachedStatement {
+        private final PreparedStatement statement;
+        private final int defaultFetchSize;
+        private final int defaultMaxRows;
+        // null while the statement sits unused in the cache
+        private Checkout current;
+        private boolean evicted;
+
+        CachedStatement(PreparedStatement statement) throws SQLException {
+            this.statement = statement;
+            this.defaultFetchSize = statement.getFetchSize();
+            this.defaultMaxRows = statement.getMaxRows();
+        }
+
+        boolean isInUse() {
+            return current != null;
+        }
+
+        PreparedStatement checkOut(Connection owner) {
+            current = new Checkout(owner);
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class },
+                    current);
+        }
+
+        /**
+         * Ends the current checkout and resets the statement for the next
+         * one. The caller holds the StatementCache lock.
+         *
+         * @return false if the statement could not be reset and has been
+         *         closed; the caller must drop it from the cache
+         */
+        boolean checkIn() {
+            if (current == null) {
+                return true;
+            }
+            current.closed = true;
+            current = null;
+            if (evicted) {
+                closeQuietly();
+                return true;
+            }
+            try {
+                ResultSet open = statement.getResultSet();
+                if (open != null) {
+                    open.close();
+                }
+                statement.clearParameters();
+                statement.clearBatch();
+                statement.clearWarnings();
+                if (statement.getFetchSize() != defaultFetchSize) {
+                    statement.setFetchSize(defaultFetchSize);
+                }
+                if (statement.getMaxRows() != defaultMaxRows) {
+                    statement.setMaxRows(defaultMaxRows);
+                }
+                return true;
+            } catch (SQLException e) {
+                // a statement we cannot reset is not worth keeping
+                evicted = true;
+                closeQuietly();
+                return false;
+            }
+        }
+
+        void evict() {
+            evicted = true;
+            if (current == null) {
+                closeQuietly();
+            }
+        }
+
+        void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * Invocation handler backing one borrower's view of the statement.
+         */
+        private class Checkout implements InvocationHandler {
+            private final Connection owner;
+            private boolean closed;
+
+            Checkout(Connection owner) {
+                this.owner = owner;
+            }
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        synchronized (StatementCache.this) {
+                            if (!closed && !checkIn()) {
+                                statements.values().remove(CachedStatement.this);
+                            }
+                        }
+                        return null;
+                    case "isClosed":
+                        return closed || statement.isClosed();
+                    case "getConnection":
+                        return owner;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "CachedStatement[" + statement + (closed ? ", returned" : "") + "]";
+                    default:
+                        break;
+                }
+                if (closed) {
+                    throw new SQLException("Statement has already been closed");
+                }
+                try {
+                    return method.invoke(statement, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ * A unit of work shares one pooled connection, and optionally one
+ * transaction, across every DAO call made on the current thread.
+ *
+ * While a unit of work is open, ConnectionUtil.getConnection() returns a
+ * shared view of its connection instead of borrowing a new one. Closing that
+ * view does nothing; the connection goes back to the pool when the unit of
+ * work ends. Inside a transaction the view also ignores setAutoCommit and
+ * commit, and turns rollback into "roll back at the end", so DAO methods that
+ * manage their own transaction simply join the surrounding one.
+ *
+ * Units of work nest: an inner run or inTransaction joins the outer one.
+ */
+public class UnitOfWork {
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+    private final Connection connection;
+    private final Connection shared;
+    private boolean transactional;
+    private boolean rollbackOnly;
+
+    private UnitOfWork(Connection connection) {
+        this.connection = connection;
+        this.shared = (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new SharedConnection());
+    }
+
+    /**
+     * Runs the work with every DAO call sharing one connection, each statement
+     * auto-committing as usual.
+     *
+     * @param work The work to run.
+     * @return what the work returned
+     * @throws RuntimeException if no connection can be borrowed
+     */
+    public static <T> T run(Supplier<T> work) {
+        if (CURRENT.get() != null) {
+            return work.get();
+        }
+        UnitOfWork unit = open();
+        try {
+            return work.get();
+        } finally {
+            unit.end();
+        }
+    }
+
+    /**
+     * Runs the work in one transaction on one shared connection. The
+     * transaction commits if the work returns normally and rolls back if it
+     * throws or if a DAO call rolled back along the way.
+     *
+     * @param work The work to run.
+     * @return what the work returned
+     * @throws RuntimeException if the transaction cannot be started or committed
+     */
+    public static <T> T inTransaction(Supplier<T> work) {
+        UnitOfWork unit = CURRENT.get();
+        if (unit != null && unit.transactional) {
+            return work.get();
+        }
+        boolean ownsUnit = unit == null;
+        if (ownsUnit) {
+            unit = open();
+        }
+        try {
+            return unit.transact(work);
+        } finally {
+            if (ownsUnit) {
+                unit.end();
+            }
+        }
+    }
+
+    /**
+     * @return true if a transaction opened by inTransaction is running on this thread
+     */
+    public static boolean isTransactionActive() {
+        UnitOfWork unit = CURRENT.get();
+        return unit != null && unit.transactional;
+    }
+
+    /**
+     * @return the shared connection of the unit of work open on this thread,
+     *         or null if there is none
+     */
+    static Connection currentConnection() {
+        UnitOfWork unit = CURRENT.get();
+        return unit == null ? null : unit.shared;
+    }
+
+    private static UnitOfWork open() {
+        Connection connection = ConnectionUtil.getConnection();
+        if (connection == null) {
+            throw new RuntimeException("Error accessing database: no connection available");
+        }
+        UnitOfWork unit = new UnitOfWork(connection);
+        CURRENT.set(unit);
+        return unit;
+    }
+
+    private void end() {
+        CURRENT.remove();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private <T> T transact(Supplier<T> work) {
+        try {
+            connection.setAutoCommit(false);
+        } catch (SQLException e) {
+            throw new RuntimeException("Error accessing database", e);
+        }
+        transactional = true;
+        rollbackOnly = false;
+        boolean committed = false;
+        try {
+            T result = work.get();
+            if (rollbackOnly) {
+                throw new IllegalStateException("Transaction was rolled back by one of its statements");
+            }
+            connection.commit();
+            committed = true;
+            return result;
+        } catch (SQLException e) {
+            throw new RuntimeException("Error accessing database", e);
+        } finally {
+            transactional = false;
+            try {
+                if (!committed) {
+                    connection.rollback();
+                }
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * The view of the connection handed to DAO code.
+     */
+    private class SharedConnection implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    // the unit of work returns the connection when it ends
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "UnitOfWork[" + connection + "]";
+                default:
+                    break;
+            }
+            if (transactional) {
+                switch (method.getName()) {
+                    case "setAutoCommit":
+                    case "commit":
+                        // the surrounding transaction decides when to commit
+                        return null;
+                    case "rollback":
+                        if (args == null) {
+                            rollbackOnly = true;
+                            return null;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
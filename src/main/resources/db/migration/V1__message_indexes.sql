@@ -0,0 +1,4 @@
+-- Secondary indexes so per-user timelines and time-ordered reads use range
+-- scans instead of walking the whole message table.
+create index if not exists message_posted_by_message_id_idx on message (posted_by, message_id);
+create index if not exists message_time_posted_epoch_idx on message (time_posted_epoch);
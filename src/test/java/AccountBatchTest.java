@@ -0,0 +1,149 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountDao;
+import DAO.UsernameTakenException;
+import Model.Account;
+import Service.AccountService;
+import Util.ConnectionUtil;
+import Util.PasswordHasher;
+
+public class AccountBatchTest {
+    AccountService accountService;
+    AccountDao accountDao;
+
+    /**
+     * Before every test, reset the database and create a fresh service, so
+     * its caches start empty.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        accountService = new AccountService();
+        accountDao = new AccountDao();
+    }
+
+    /**
+     * A username that appears twice in one createAll is reported, and none of
+     * the batch is stored.
+     */
+    @Test
+    public void createAllDuplicateUsernameStoresNothing() {
+        UsernameTakenException e = Assert.assertThrows(UsernameTakenException.class,
+                () -> accountService.createAll(List.of(
+                        new Account("dup", "password"),
+                        new Account("other", "password"),
+                        new Account("dup", "password"))));
+
+        Assert.assertEquals("dup", e.getUsername());
+        Assert.assertTrue(accountDao.getByUsername("dup").isEmpty());
+        Assert.assertTrue(accountDao.getByUsername("other").isEmpty());
+        Assert.assertEquals(1, accountDao.getAll().size());
+    }
+
+    /**
+     * If one update in an updateAll takes a username already in use, the
+     * other updates in the batch are rolled back too.
+     */
+    @Test
+    public void updateAllRollsBackEveryUpdate() {
+        List<Account> created = accountService.createAll(List.of(
+                new Account("first", "password"),
+                new Account("second", "password")));
+        int firstId = created.get(0).getAccount_id();
+        int secondId = created.get(1).getAccount_id();
+
+        UsernameTakenException e = Assert.assertThrows(UsernameTakenException.class,
+                () -> accountService.updateAll(List.of(
+                        new Account(firstId, "renamed", "password"),
+                        new Account(secondId, "testuser1", "password"))));
+
+        Assert.assertEquals("testuser1", e.getUsername());
+        Assert.assertEquals("first", accountDao.get(firstId).get().getUsername());
+        Assert.assertEquals("second", accountDao.get(secondId).get().getUsername());
+        Assert.assertTrue(accountService.getByUsername("renamed").isEmpty());
+    }
+
+    /**
+     * If one delete in a deleteAll fails because the account still has
+     * messages, the other deletes are rolled back and the ID index still
+     * knows every account.
+     */
+    @Test
+    public void deleteAllRollsBackEveryDelete() {
+        int id = accountService.createAll(List.of(new Account("unused", "password"))).get(0).getAccount_id();
+
+        Assert.assertThrows(RuntimeException.class, () -> accountService.deleteAll(new int[] { id, 1 }));
+
+        Assert.assertTrue(accountDao.get(id).isPresent());
+        Assert.assertTrue(accountDao.get(1).isPresent());
+        Assert.assertTrue(accountService.exists(id));
+        Assert.assertTrue(accountService.exists(1));
+    }
+
+    /**
+     * Missing IDs come back as empty Optionals, in request order, from
+     * getMany, updateAll and deleteAll.
+     */
+    @Test
+    public void missingIdsAreEmpty() {
+        List<Optional<Account>> found = accountService.getMany(new int[] { 99, 1 });
+        Assert.assertEquals(2, found.size());
+        Assert.assertTrue(found.get(0).isEmpty());
+        Assert.assertEquals("testuser1", found.get(1).get().getUsername());
+
+        List<Optional<Account>> updated = accountService.updateAll(List.of(new Account(99, "ghost", "password")));
+        Assert.assertEquals(List.of(Optional.empty()), updated);
+        Assert.assertTrue(accountDao.getByUsername("ghost").isEmpty());
+
+        Assert.assertEquals(List.of(Optional.empty(), Optional.empty()), accountService.deleteAll(new int[] { 99, 98 }));
+        Assert.assertEquals(1, accountDao.getAll().size());
+    }
+
+    /**
+     * Batch writes invalidate the username cache, including the negative
+     * entries for names that had no account, and keep the ID index current.
+     */
+    @Test
+    public void batchWritesInvalidateUsernameCache() {
+        Assert.assertTrue(accountService.getByUsername("newcomer").isEmpty());
+
+        int id = accountService.createAll(List.of(new Account("newcomer", "password"))).get(0).getAccount_id();
+        Assert.assertEquals(id, accountService.getByUsername("newcomer").get().getAccount_id());
+        Assert.assertTrue(accountService.exists(id));
+
+        Assert.assertTrue(accountService.getByUsername("renamed").isEmpty());
+        accountService.updateAll(List.of(new Account(id, "renamed", "password")));
+        Assert.assertTrue(accountService.getByUsername("newcomer").isEmpty());
+        Assert.assertEquals(id, accountService.getByUsername("renamed").get().getAccount_id());
+
+        accountService.deleteAll(new int[] { id });
+        Assert.assertTrue(accountService.getByUsername("renamed").isEmpty());
+        Assert.assertFalse(accountService.exists(id));
+    }
+
+    /**
+     * A createAll larger than the password hashing queue is hashed in chunks
+     * instead of being refused, and every account is stored.
+     */
+    @Test
+    public void createAllLargerThanHashQueue() {
+        // more than the 64 queue slots plus one running hash per worker
+        int count = 64 + PasswordHasher.getThreadCount() + 1;
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            accounts.add(new Account("bulk" + i, "password"));
+        }
+
+        List<Account> created = accountService.createAll(accounts);
+
+        Assert.assertEquals(count, created.size());
+        Assert.assertEquals(count + 1, accountDao.getAll().size());
+        Assert.assertTrue(accountService.exists(created.get(count - 1).getAccount_id()));
+    }
+}
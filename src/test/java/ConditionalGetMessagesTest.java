@@ -0,0 +1,104 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ConditionalGetMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages, then again with If-None-Match set to the returned ETag
+     *
+     * Expected Response:
+     *  Status Code: 200 with an ETag header, then 304
+     *  Response Body: empty for the 304
+     */
+    @Test
+    public void getAllMessagesNotModified() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build();
+        HttpResponse<String> first = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, first.statusCode());
+        String etag = first.headers().firstValue("ETag").orElse(null);
+        Assert.assertNotNull(etag);
+
+        HttpRequest conditional = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .header("If-None-Match", etag)
+                .build();
+        HttpResponse<String> second = webClient.send(conditional, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(304, second.statusCode());
+        Assert.assertTrue(second.body().isEmpty());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1, then PATCH localhost:8080/messages/1, then GET
+     * localhost:8080/messages/1 with If-None-Match set to the first ETag
+     *
+     * Expected Response:
+     *  Status Code: 200 for the last request, with a different ETag and the updated message
+     */
+    @Test
+    public void getMessageByIdModifiedAfterUpdate() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .build();
+        HttpResponse<String> first = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        String etag = first.headers().firstValue("ETag").orElse(null);
+        Assert.assertNotNull(etag);
+
+        HttpRequest patchMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{"+
+                        "\"message_text\": \"updated message\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(patchMessageRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest conditional = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .header("If-None-Match", etag)
+                .build();
+        HttpResponse<String> second = webClient.send(conditional, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, second.statusCode());
+        Assert.assertNotEquals(etag, second.headers().firstValue("ETag").orElse(null));
+        Assert.assertEquals("updated message", objectMapper.readTree(second.body()).get("message_text").asText());
+    }
+}
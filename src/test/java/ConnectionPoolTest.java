@@ -0,0 +1,199 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.ConnectionPool;
+
+public class ConnectionPoolTest {
+    JdbcDataSource dataSource;
+    ConnectionPool pool;
+
+    /**
+     * Before every test, point a fresh data source at a private in-memory
+     * database, so the application's shared pool is left alone.
+     */
+    @Before
+    public void setUp() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:connection-pool-test;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        dataSource.setPassword("sa");
+    }
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    /**
+     * With every connection checked out, a borrower waits the borrow timeout
+     * and then fails; once a connection comes back, borrowing works again.
+     */
+    @Test
+    public void borrowTimesOutWhenExhausted() throws SQLException {
+        pool = new ConnectionPool(dataSource, 0, 1, 200, 60000, 60000, true, 0);
+        Connection held = pool.borrow();
+
+        long start = System.nanoTime();
+        Assert.assertThrows(SQLTimeoutException.class, () -> pool.borrow());
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150);
+        Assert.assertEquals(0, pool.getWaitingCount());
+
+        held.close();
+        try (Connection conn = pool.borrow()) {
+            Assert.assertFalse(conn.isClosed());
+        }
+    }
+
+    /**
+     * A borrower blocked on an exhausted pool is counted as waiting and gets
+     * the connection the moment it is returned.
+     */
+    @Test
+    public void waitingBorrowerGetsReturnedConnection() throws Exception {
+        pool = new ConnectionPool(dataSource, 0, 1, 5000, 60000, 60000, true, 0);
+        Connection held = pool.borrow();
+
+        CompletableFuture<Connection> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.borrow();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        long deadline = System.currentTimeMillis() + 2000;
+        while (pool.getWaitingCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(1, pool.getWaitingCount());
+
+        held.close();
+        try (Connection conn = waiter.get(2, TimeUnit.SECONDS)) {
+            Assert.assertFalse(conn.isClosed());
+        }
+        Assert.assertEquals(0, pool.getWaitingCount());
+        Assert.assertEquals(1, pool.getOpenCount());
+    }
+
+    /**
+     * The idle sweep closes connections idle past the timeout, but never
+     * drops below minSize.
+     */
+    @Test
+    public void idleConnectionsAreEvicted() throws Exception {
+        pool = new ConnectionPool(dataSource, 1, 3, 1000, 100, 50, true, 0);
+        Connection first = pool.borrow();
+        Connection second = pool.borrow();
+        Connection third = pool.borrow();
+        first.close();
+        second.close();
+        third.close();
+        Assert.assertEquals(3, pool.getOpenCount());
+
+        long deadline = System.currentTimeMillis() + 3000;
+        while (pool.getOpenCount() > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assert.assertEquals(1, pool.getOpenCount());
+        Assert.assertEquals(1, pool.getIdleCount());
+        Thread.sleep(300);
+        Assert.assertEquals(1, pool.getOpenCount());
+    }
+
+    /**
+     * An idle connection that died while in the pool is discarded when it
+     * would be handed out, and the borrower gets a fresh one instead.
+     */
+    @Test
+    public void validateOnBorrowReplacesDeadConnection() throws SQLException {
+        pool = new ConnectionPool(dataSource, 0, 1, 1000, 60000, 60000, true, 0);
+        Connection lease = pool.borrow();
+        Connection physical = lease.unwrap(Connection.class);
+        lease.close();
+        physical.close();
+
+        try (Connection conn = pool.borrow(); Statement stmt = conn.createStatement()) {
+            Assert.assertFalse(conn.isClosed());
+            Assert.assertTrue(stmt.execute("SELECT 1"));
+        }
+        Assert.assertEquals(1, pool.getOpenCount());
+    }
+
+    /**
+     * Without validation the dead connection is handed out as it is.
+     */
+    @Test
+    public void noValidationHandsOutDeadConnection() throws SQLException {
+        pool = new ConnectionPool(dataSource, 0, 1, 1000, 60000, 60000, false, 0);
+        Connection lease = pool.borrow();
+        Connection physical = lease.unwrap(Connection.class);
+        lease.close();
+        physical.close();
+
+        try (Connection conn = pool.borrow()) {
+            Assert.assertTrue(conn.isClosed());
+        }
+    }
+
+    /**
+     * A connection that is already broken when it is returned is closed
+     * instead of going back into the pool, and its slot is freed.
+     */
+    @Test
+    public void brokenConnectionIsNotPooled() throws SQLException {
+        pool = new ConnectionPool(dataSource, 0, 1, 200, 60000, 60000, false, 0);
+        Connection lease = pool.borrow();
+        lease.unwrap(Connection.class).close();
+        lease.close();
+
+        Assert.assertEquals(0, pool.getIdleCount());
+        Assert.assertEquals(0, pool.getOpenCount());
+        Assert.assertEquals(0, pool.getActiveCount());
+        try (Connection conn = pool.borrow()) {
+            Assert.assertFalse(conn.isClosed());
+        }
+    }
+
+    /**
+     * The counters follow connections as they are borrowed and returned, and
+     * a returned lease can no longer be used or returned twice.
+     */
+    @Test
+    public void countersTrackBorrowsAndReturns() throws SQLException {
+        pool = new ConnectionPool(dataSource, 1, 2, 1000, 60000, 60000, true, 0);
+        Assert.assertEquals(1, pool.getOpenCount());
+        Assert.assertEquals(1, pool.getIdleCount());
+        Assert.assertEquals(0, pool.getActiveCount());
+        Assert.assertEquals(2, pool.getMaxSize());
+
+        Connection first = pool.borrow();
+        Connection second = pool.borrow();
+        Assert.assertEquals(2, pool.getActiveCount());
+        Assert.assertEquals(0, pool.getIdleCount());
+        Assert.assertEquals(2, pool.getOpenCount());
+        Assert.assertEquals(2, pool.getTotalBorrows());
+
+        first.close();
+        first.close();
+        Assert.assertThrows(SQLException.class, () -> first.createStatement());
+        Assert.assertEquals(1, pool.getActiveCount());
+        Assert.assertEquals(1, pool.getIdleCount());
+
+        second.close();
+        Assert.assertEquals(0, pool.getActiveCount());
+        Assert.assertEquals(2, pool.getIdleCount());
+        Assert.assertEquals(2, pool.getOpenCount());
+        Assert.assertEquals(2, pool.getTotalBorrows());
+    }
+}
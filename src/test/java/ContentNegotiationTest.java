@@ -0,0 +1,158 @@
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ContentNegotiationTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    ObjectMapper cborMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMappers
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        cborMapper = new CBORMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages as JSON, then with Accept: application/cbor
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the same messages, CBOR-encoded, under a different ETag
+     */
+    @Test
+    public void getAllMessagesAsCbor() throws IOException, InterruptedException {
+        HttpResponse<String> json = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<byte[]> cbor = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .header("Accept", "application/cbor")
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+
+        Assert.assertEquals(200, cbor.statusCode());
+        Assert.assertEquals("application/cbor", cbor.headers().firstValue("Content-Type").orElse(null));
+        Assert.assertNotEquals(json.headers().firstValue("ETag").orElse(null),
+                cbor.headers().firstValue("ETag").orElse(null));
+        List<Message> expected = objectMapper.readValue(json.body(), new TypeReference<List<Message>>(){});
+        List<Message> actual = cborMapper.readValue(cbor.body(), new TypeReference<List<Message>>(){});
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected, actual);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with Accept: application/vnd.socialmedia.message-columns
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the same messages as the JSON list, in column blocks
+     */
+    @Test
+    public void getAllMessagesAsColumns() throws IOException, InterruptedException {
+        HttpResponse<String> json = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<byte[]> columns = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .header("Accept", "application/vnd.socialmedia.message-columns, application/json;q=0.5")
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+
+        Assert.assertEquals(200, columns.statusCode());
+        Assert.assertEquals("application/vnd.socialmedia.message-columns",
+                columns.headers().firstValue("Content-Type").orElse(null));
+        List<Message> expected = objectMapper.readValue(json.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expected, readColumns(columns.body()));
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with a CBOR body and Accept: application/cbor
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the created message, CBOR-encoded
+     */
+    @Test
+    public void createMessageFromCbor() throws IOException, InterruptedException {
+        byte[] body = cborMapper.writeValueAsBytes(new Message(1, "hello cbor", 1669947792));
+        HttpResponse<byte[]> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .header("Content-Type", "application/cbor")
+                .header("Accept", "application/cbor")
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+
+        Assert.assertEquals(200, response.statusCode());
+        Message actual = cborMapper.readValue(response.body(), Message.class);
+        Assert.assertEquals(new Message(2, 1, "hello cbor", 1669947792), actual);
+    }
+
+    /**
+     * Decodes a MESSAGE_COLUMNS body.
+     */
+    private List<Message> readColumns(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        List<Message> messages = new ArrayList<>();
+        int rows;
+        while ((rows = in.readInt()) > 0) {
+            int[] messageIds = new int[rows];
+            int[] postedBy = new int[rows];
+            long[] timesPosted = new long[rows];
+            for (int i = 0; i < rows; i++) {
+                messageIds[i] = in.readInt();
+            }
+            for (int i = 0; i < rows; i++) {
+                postedBy[i] = in.readInt();
+            }
+            for (int i = 0; i < rows; i++) {
+                timesPosted[i] = in.readLong();
+            }
+            for (int i = 0; i < rows; i++) {
+                byte[] text = new byte[in.readInt()];
+                in.readFully(text);
+                messages.add(new Message(messageIds[i], postedBy[i], new String(text, StandardCharsets.UTF_8),
+                        timesPosted[i]));
+            }
+        }
+        Assert.assertEquals(-1, in.read());
+        return messages;
+    }
+}
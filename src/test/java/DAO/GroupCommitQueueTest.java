@@ -0,0 +1,201 @@
+package DAO;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Model.Message;
+import Util.ConnectionUtil;
+
+public class GroupCommitQueueTest {
+    RecordingMessageDao messageDao;
+    GroupCommitQueue queue;
+
+    /**
+     * Before every test, reset the database.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        messageDao = new RecordingMessageDao();
+    }
+
+    @After
+    public void tearDown() {
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    /**
+     * Messages submitted from many threads at once are written in fewer
+     * transactions than messages, and every one gets its own ID.
+     */
+    @Test
+    public void concurrentSubmitsShareBatches() throws Exception {
+        queue = new GroupCommitQueue(messageDao, 256, 100, 1000);
+        int count = 50;
+        ExecutorService submitters = Executors.newFixedThreadPool(8);
+        List<CompletableFuture<Integer>> futures = new CopyOnWriteArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < count; i++) {
+            String text = "grouped " + i;
+            submitters.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                futures.add(queue.submit(new Message(1, text, 1669947792)));
+            });
+        }
+        start.countDown();
+        submitters.shutdown();
+        Assert.assertTrue(submitters.awaitTermination(5, TimeUnit.SECONDS));
+
+        Set<Integer> ids = new HashSet<>();
+        for (CompletableFuture<Integer> future : futures) {
+            ids.add(future.get(5, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(count, ids.size());
+        Assert.assertTrue(messageDao.batchSizes.size() < count);
+        Assert.assertEquals(count + 1, messageDao.getAll().size());
+    }
+
+    /**
+     * A row that fails inside a batch fails only its own caller; the writer
+     * retries the others one at a time and they commit.
+     */
+    @Test
+    public void badRowFailsOnlyItsCaller() throws Exception {
+        queue = new GroupCommitQueue(messageDao, 256, 200, 1000);
+
+        CompletableFuture<Integer> first = queue.submit(new Message(1, "first", 1669947792));
+        CompletableFuture<Integer> bad = queue.submit(new Message(99, "nobody", 1669947792));
+        CompletableFuture<Integer> last = queue.submit(new Message(1, "last", 1669947792));
+
+        Assert.assertTrue(first.get(5, TimeUnit.SECONDS) > 0);
+        Assert.assertTrue(last.get(5, TimeUnit.SECONDS) > 0);
+        ExecutionException failure = Assert.assertThrows(ExecutionException.class,
+                () -> bad.get(5, TimeUnit.SECONDS));
+        Assert.assertTrue(failure.getCause() instanceof RuntimeException);
+        // one batch of three, then three single-row retries
+        Assert.assertEquals(List.of(3, 1, 1, 1), messageDao.batchSizes);
+        Assert.assertEquals(3, messageDao.getAll().size());
+    }
+
+    /**
+     * An Error thrown while writing fails that batch, and the writer keeps
+     * serving later submits.
+     */
+    @Test
+    public void writerSurvivesError() throws Exception {
+        queue = new GroupCommitQueue(messageDao, 256, 0, 1000);
+        messageDao.failNext = new AssertionError("boom");
+
+        CompletableFuture<Integer> failed = queue.submit(new Message(1, "doomed", 1669947792));
+        ExecutionException failure = Assert.assertThrows(ExecutionException.class,
+                () -> failed.get(5, TimeUnit.SECONDS));
+        Assert.assertTrue(failure.getCause() instanceof AssertionError);
+
+        Assert.assertTrue(queue.submit(new Message(1, "after", 1669947792)).get(5, TimeUnit.SECONDS) > 0);
+    }
+
+    /**
+     * A caller that cancels while its message is still queued keeps it from
+     * being written.
+     */
+    @Test
+    public void cancelledSubmitIsNotWritten() throws Exception {
+        queue = new GroupCommitQueue(messageDao, 256, 0, 1000);
+        CountDownLatch release = new CountDownLatch(1);
+        messageDao.blockNext = release;
+
+        CompletableFuture<Integer> inFlight = queue.submit(new Message(1, "in flight", 1669947792));
+        messageDao.blocked.await(5, TimeUnit.SECONDS);
+        CompletableFuture<Integer> cancelled = queue.submit(new Message(1, "cancelled", 1669947792));
+        Assert.assertTrue(cancelled.cancel(false));
+        release.countDown();
+
+        Assert.assertTrue(inFlight.get(5, TimeUnit.SECONDS) > 0);
+        // a later submit goes through the writer after the cancelled one was skipped
+        Assert.assertTrue(queue.submit(new Message(1, "later", 1669947792)).get(5, TimeUnit.SECONDS) > 0);
+        List<String> texts = new ArrayList<>();
+        for (Message message : messageDao.getAll()) {
+            texts.add(message.getMessage_text());
+        }
+        Assert.assertFalse(texts.contains("cancelled"));
+        Assert.assertTrue(texts.contains("later"));
+    }
+
+    /**
+     * After shutdown, messages still queued and later submits fail instead
+     * of waiting forever.
+     */
+    @Test
+    public void shutdownFailsQueuedAndLaterSubmits() throws Exception {
+        queue = new GroupCommitQueue(messageDao, 256, 0, 1000);
+        CountDownLatch release = new CountDownLatch(1);
+        messageDao.blockNext = release;
+
+        CompletableFuture<Integer> inFlight = queue.submit(new Message(1, "in flight", 1669947792));
+        messageDao.blocked.await(5, TimeUnit.SECONDS);
+        CompletableFuture<Integer> queued = queue.submit(new Message(1, "queued", 1669947792));
+        queue.shutdown();
+        release.countDown();
+
+        Assert.assertTrue(inFlight.get(5, TimeUnit.SECONDS) > 0);
+        ExecutionException queuedFailure = Assert.assertThrows(ExecutionException.class,
+                () -> queued.get(5, TimeUnit.SECONDS));
+        Assert.assertTrue(queuedFailure.getCause() instanceof IllegalStateException);
+        CompletableFuture<Integer> late = queue.submit(new Message(1, "late", 1669947792));
+        ExecutionException lateFailure = Assert.assertThrows(ExecutionException.class,
+                () -> late.get(5, TimeUnit.SECONDS));
+        Assert.assertTrue(lateFailure.getCause() instanceof IllegalStateException);
+    }
+
+    /**
+     * Records the size of every createAll call, and can hold or fail the
+     * next one.
+     */
+    static class RecordingMessageDao extends MessageDao {
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final CountDownLatch blocked = new CountDownLatch(1);
+        volatile CountDownLatch blockNext;
+        volatile Error failNext;
+
+        @Override
+        public List<Message> createAll(List<Message> messages) {
+            batchSizes.add(messages.size());
+            CountDownLatch release = blockNext;
+            if (release != null) {
+                blockNext = null;
+                blocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            Error failure = failNext;
+            if (failure != null) {
+                failNext = null;
+                throw failure;
+            }
+            return super.createAll(messages);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.Optional;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountDao;
+import DAO.MessageDao;
+import Model.Account;
+import Util.ConnectionUtil;
+
+public class DeleteAccountTest {
+    AccountDao accountDao;
+    MessageDao messageDao;
+
+    /**
+     * Before every test, reset the database and create fresh DAOs.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        accountDao = new AccountDao();
+        messageDao = new MessageDao();
+    }
+
+    /**
+     * Deleting an account with no messages returns the deleted row and removes it.
+     */
+    @Test
+    public void deleteAccountWithoutMessages() {
+        Account created = accountDao.create(new Account("lonely", "hashed"));
+
+        Optional<Account> deleted = accountDao.delete(created.getAccount_id());
+
+        Assert.assertTrue(deleted.isPresent());
+        Assert.assertEquals("lonely", deleted.get().getUsername());
+        Assert.assertTrue(accountDao.get(created.getAccount_id()).isEmpty());
+    }
+
+    /**
+     * Deleting an account that still has messages fails on the foreign key and
+     * leaves both the account and its message in place.
+     */
+    @Test
+    public void deleteAccountWithMessagesRollsBack() {
+        Assert.assertThrows(RuntimeException.class, () -> accountDao.delete(1));
+
+        Assert.assertTrue(accountDao.get(1).isPresent());
+        Assert.assertTrue(messageDao.get(1).isPresent());
+    }
+
+    /**
+     * Deleting an account that does not exist returns empty.
+     */
+    @Test
+    public void deleteMissingAccount() {
+        Assert.assertTrue(accountDao.delete(999).isEmpty());
+    }
+}
@@ -0,0 +1,122 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.MessageDao;
+import Model.Message;
+import Service.MessageService;
+import Util.ConnectionUtil;
+
+public class MessageBatchTest {
+    MessageService messageService;
+    MessageDao messageDao;
+
+    /**
+     * Before every test, reset the database and create a fresh service, so
+     * its caches start empty.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        messageService = new MessageService();
+        messageDao = new MessageDao();
+    }
+
+    /**
+     * If one update in an updateAll fails, the other updates in the batch are
+     * rolled back too.
+     */
+    @Test
+    public void updateAllRollsBackEveryUpdate() {
+        int id = messageService.createAll(List.of(new Message(1, "second message", 1669947792)))
+                .get(0).getMessage_id();
+
+        Assert.assertThrows(RuntimeException.class, () -> messageService.updateAll(List.of(
+                new Message(1, 1, "changed", 1669947792),
+                new Message(id, 1, "x".repeat(300), 1669947792))));
+
+        Assert.assertEquals("test message 1", messageDao.get(1).get().getMessage_text());
+        Assert.assertEquals("second message", messageDao.get(id).get().getMessage_text());
+    }
+
+    /**
+     * If an insert in a createAll fails, none of the batch is stored.
+     */
+    @Test
+    public void createAllRollsBackEveryInsert() {
+        Assert.assertThrows(RuntimeException.class, () -> messageService.createAll(List.of(
+                new Message(1, "fine", 1669947792),
+                new Message(99, "no such poster", 1669947792))));
+
+        Assert.assertEquals(1, messageDao.getAll().size());
+    }
+
+    /**
+     * Missing IDs come back as empty Optionals, in request order, from
+     * getMany, updateAll and deleteAll.
+     */
+    @Test
+    public void missingIdsAreEmpty() {
+        List<Optional<Message>> found = messageService.getMany(new int[] { 99, 1, 99 });
+        Assert.assertEquals(3, found.size());
+        Assert.assertTrue(found.get(0).isEmpty());
+        Assert.assertEquals("test message 1", found.get(1).get().getMessage_text());
+        Assert.assertTrue(found.get(2).isEmpty());
+
+        List<Optional<Message>> updated = messageService.updateAll(List.of(new Message(99, 1, "ghost", 1669947792)));
+        Assert.assertEquals(List.of(Optional.empty()), updated);
+
+        Assert.assertEquals(List.of(Optional.empty()), messageService.deleteAll(new int[] { 99 }));
+        Assert.assertEquals(1, messageDao.getAll().size());
+    }
+
+    /**
+     * A getMany whose query fails throws instead of reporting every ID as
+     * missing, and the failure is not cached.
+     */
+    @Test
+    public void failedLookupIsNotReportedMissing() throws SQLException {
+        try (Connection conn = ConnectionUtil.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE message RENAME TO message_away");
+        }
+        try {
+            Assert.assertThrows(RuntimeException.class, () -> messageService.getMany(new int[] { 1, 99 }));
+        } finally {
+            try (Connection conn = ConnectionUtil.getConnection(); Statement stmt = conn.createStatement()) {
+                stmt.execute("ALTER TABLE message_away RENAME TO message");
+            }
+        }
+
+        List<Optional<Message>> found = messageService.getMany(new int[] { 1 });
+        Assert.assertEquals("test message 1", found.get(0).get().getMessage_text());
+    }
+
+    /**
+     * Batch writes invalidate the message cache and the poster's timeline, so
+     * the next read sees the change.
+     */
+    @Test
+    public void batchWritesInvalidateCaches() {
+        Assert.assertEquals("test message 1", messageService.get(1).get().getMessage_text());
+        Assert.assertEquals(1, messageService.getAllByUserId(1).size());
+
+        int id = messageService.createAll(List.of(new Message(1, "added", 1669947792))).get(0).getMessage_id();
+        Assert.assertEquals(2, messageService.getAllByUserId(1).size());
+
+        messageService.updateAll(List.of(new Message(1, 1, "changed", 1669947792)));
+        Assert.assertEquals("changed", messageService.get(1).get().getMessage_text());
+        Assert.assertEquals("changed", messageService.getMany(new int[] { 1 }).get(0).get().getMessage_text());
+        Assert.assertEquals("changed", messageService.getAllByUserId(1).get(0).getMessage_text());
+
+        messageService.deleteAll(new int[] { 1, id });
+        Assert.assertTrue(messageService.get(1).isEmpty());
+        Assert.assertTrue(messageService.get(id).isEmpty());
+        Assert.assertTrue(messageService.getAllByUserId(1).isEmpty());
+    }
+}
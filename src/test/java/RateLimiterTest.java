@@ -0,0 +1,39 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import Util.RateLimiter;
+
+public class RateLimiterTest {
+
+    /**
+     * A key that has used its burst is throttled.
+     */
+    @Test
+    public void keyThrottledAfterBurst() {
+        RateLimiter limiter = new RateLimiter(2, 1, 10);
+
+        Assert.assertEquals(0, limiter.tryAcquire("user"));
+        Assert.assertEquals(0, limiter.tryAcquire("user"));
+        Assert.assertTrue(limiter.tryAcquire("user") > 0);
+        Assert.assertEquals(0, limiter.tryAcquire("someone else"));
+    }
+
+    /**
+     * Flooding a full limiter with made-up keys neither throttles new keys
+     * nor frees a drained key, and the key map stays bounded.
+     */
+    @Test
+    public void floodOfNewKeysDoesNotShareABucket() {
+        RateLimiter limiter = new RateLimiter(2, 1, 3);
+        limiter.tryAcquire("victim");
+        limiter.tryAcquire("victim");
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(0, limiter.tryAcquire("made-up-" + i));
+        }
+
+        Assert.assertEquals(0, limiter.tryAcquire("legitimate"));
+        Assert.assertTrue(limiter.tryAcquire("victim") > 0);
+        Assert.assertTrue(limiter.size() <= 3);
+    }
+}
@@ -0,0 +1,315 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ResponseCompressionTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Posting 40 messages, then sending an http request to GET localhost:8080/messages with Accept-Encoding: gzip
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: gzip-compressed, and the same as the uncompressed list once decompressed
+     */
+    @Test
+    public void getAllMessagesGzipped() throws IOException, InterruptedException {
+        for (int i = 0; i < 40; i++) {
+            HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{"+
+                            "\"posted_by\":1, " +
+                            "\"message_text\": \"compressible message number " + i + "\", " +
+                            "\"time_posted_epoch\": 1669947792}"))
+                    .header("Content-Type", "application/json")
+                    .build();
+            Assert.assertEquals(200, webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        }
+
+        HttpResponse<String> plain = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<byte[]> gzipped = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .header("Accept-Encoding", "gzip")
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+
+        Assert.assertEquals(200, gzipped.statusCode());
+        Assert.assertEquals("gzip", gzipped.headers().firstValue("Content-Encoding").orElse(null));
+        Assert.assertTrue(gzipped.body().length < plain.body().length());
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.body()))) {
+            Assert.assertEquals(plain.body(), new String(in.readAllBytes()));
+        }
+    }
+
+    /**
+     * Posting 40 messages, then sending GET localhost:8080/messages?limit=50 with and without Accept-Encoding:
+     * gzip, and revalidating with the gzip ETag
+     *
+     * Expected Response:
+     *  The gzip body has its own ETag, ending in --gzip; If-None-Match with that tag gets 304
+     */
+    @Test
+    public void gzipBodyHasItsOwnETag() throws IOException, InterruptedException {
+        for (int i = 0; i < 40; i++) {
+            HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{"+
+                            "\"posted_by\":1, " +
+                            "\"message_text\": \"compressible message number " + i + "\", " +
+                            "\"time_posted_epoch\": 1669947792}"))
+                    .header("Content-Type", "application/json")
+                    .build();
+            Assert.assertEquals(200, webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        }
+
+        HttpResponse<String> plain = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?limit=50"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<byte[]> gzipped = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?limit=50"))
+                .header("Accept-Encoding", "gzip")
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+
+        String plainTag = plain.headers().firstValue("ETag").orElseThrow();
+        String gzipTag = gzipped.headers().firstValue("ETag").orElseThrow();
+        Assert.assertEquals("gzip", gzipped.headers().firstValue("Content-Encoding").orElse(null));
+        Assert.assertNotEquals(plainTag, gzipTag);
+        Assert.assertTrue(gzipTag.endsWith("--gzip\""));
+
+        HttpResponse<byte[]> revalidated = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?limit=50"))
+                .header("Accept-Encoding", "gzip")
+                .header("If-None-Match", gzipTag)
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+        Assert.assertEquals(304, revalidated.statusCode());
+    }
+
+    /**
+     * Sending GET localhost:8080/messages twice with and twice without Accept-Encoding: gzip, so the second of
+     * each is served from the encoded body cache
+     *
+     * Expected Response:
+     *  The cached gzip body keeps its own ETag, ending in --gzip, distinct from the plain body's ETag
+     */
+    @Test
+    public void cachedGzipBodyHasItsOwnETag() throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString("[" +
+                        ("{\"posted_by\":1, \"message_text\": \"compressible message\", \"time_posted_epoch\": 1669947792},")
+                                .repeat(39) +
+                        "{\"posted_by\":1, \"message_text\": \"compressible message\", \"time_posted_epoch\": 1669947792}]"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest plainRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build();
+        HttpRequest gzipRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .header("Accept-Encoding", "gzip")
+                .build();
+        for (int attempt = 0; attempt < 2; attempt++) {
+            HttpResponse<String> plain = webClient.send(plainRequest, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<byte[]> gzipped = webClient.send(gzipRequest, HttpResponse.BodyHandlers.ofByteArray());
+
+            String plainTag = plain.headers().firstValue("ETag").orElseThrow();
+            String gzipTag = gzipped.headers().firstValue("ETag").orElseThrow();
+            Assert.assertTrue(plain.headers().firstValue("Content-Encoding").isEmpty());
+            Assert.assertEquals("gzip", gzipped.headers().firstValue("Content-Encoding").orElse(null));
+            Assert.assertEquals(plainTag.substring(0, plainTag.length() - 1) + "--gzip\"", gzipTag);
+        }
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1 with Accept-Encoding: gzip
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the message, uncompressed because it is under the size threshold
+     */
+    @Test
+    public void getSmallMessageNotCompressed() throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .header("Accept-Encoding", "gzip")
+                .build(), HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.headers().firstValue("Content-Encoding").isEmpty());
+        Assert.assertTrue(response.body().contains("\"message_id\":1"));
+    }
+
+    /**
+     * Posting 40 messages, then sending GET localhost:8080/messages?limit=50 with Accept-Encoding: gzip;q=0.5,
+     * deflate, and revalidating with the deflate ETag
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: deflate-compressed, and the same as the uncompressed page once inflated, under an ETag ending
+     *  in --deflate; If-None-Match with that tag gets 304 and the same tag back
+     */
+    @Test
+    public void getMessagesDeflated() throws IOException, InterruptedException {
+        postMessages(40);
+
+        HttpResponse<String> plain = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?limit=50"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<byte[]> deflated = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?limit=50"))
+                .header("Accept-Encoding", "gzip;q=0.5, deflate")
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+
+        Assert.assertEquals(200, deflated.statusCode());
+        Assert.assertEquals("deflate", deflated.headers().firstValue("Content-Encoding").orElse(null));
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(deflated.body()))) {
+            Assert.assertEquals(plain.body(), new String(in.readAllBytes()));
+        }
+        String plainTag = plain.headers().firstValue("ETag").orElseThrow();
+        String deflateTag = deflated.headers().firstValue("ETag").orElseThrow();
+        Assert.assertEquals(plainTag.substring(0, plainTag.length() - 1) + "--deflate\"", deflateTag);
+
+        HttpResponse<byte[]> revalidated = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?limit=50"))
+                .header("Accept-Encoding", "deflate")
+                .header("If-None-Match", deflateTag)
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+        Assert.assertEquals(304, revalidated.statusCode());
+        Assert.assertEquals(deflateTag, revalidated.headers().firstValue("ETag").orElse(null));
+    }
+
+    /**
+     * With metrics enabled, posting 40 messages, then sending GET localhost:8080/messages?limit=50 with
+     * Accept-Encoding: gzip and GET localhost:8080/messages/1 with the same header, then GET
+     * localhost:8080/metrics/compression
+     *
+     * Expected Response:
+     *  The page counts as compressed under "GET /messages", with its bytes and compression time; the single message
+     *  counts as skipped under "GET /messages/{id}"
+     */
+    @Test
+    public void compressionMetricsPerRoute() throws IOException, InterruptedException {
+        app.stop();
+        System.setProperty("socialmedia.metrics.enabled", "true");
+        try {
+            app = new SocialMediaController().startAPI();
+        } finally {
+            System.clearProperty("socialmedia.metrics.enabled");
+        }
+        app.start(8080);
+        postMessages(40);
+
+        webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?limit=50"))
+                .header("Accept-Encoding", "gzip")
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+        webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .header("Accept-Encoding", "gzip")
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+        HttpResponse<String> metrics = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/metrics/compression"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+
+        JsonNode stats = new ObjectMapper().readTree(metrics.body());
+        JsonNode page = stats.get("GET /messages");
+        Assert.assertEquals(1, page.get("compressed").asLong());
+        Assert.assertTrue(page.get("bytesOut").asLong() < page.get("bytesIn").asLong());
+        Assert.assertTrue(page.get("compressionMillis").asDouble() > 0);
+        Assert.assertEquals(1, stats.get("GET /messages/{id}").get("skipped").asLong());
+    }
+
+    /**
+     * Inserting 1000 long messages, so the list is streamed in many writes rather than cached, then sending GET
+     * localhost:8080/messages with and without Accept-Encoding: gzip
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: gzip-compressed, and the same as the uncompressed list once decompressed
+     */
+    @Test
+    public void getStreamedMessagesGzipped() throws IOException, InterruptedException, SQLException {
+        try (Connection conn = ConnectionUtil.getConnection();
+                PreparedStatement ps = conn.prepareStatement(
+                        "insert into message (posted_by, message_text, time_posted_epoch) values (1, ?, 1669947792)")) {
+            for (int i = 0; i < 1000; i++) {
+                ps.setString(1, "streamed message " + i + " " + "y".repeat(200));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        HttpResponse<String> plain = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<byte[]> gzipped = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .header("Accept-Encoding", "gzip")
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+
+        Assert.assertEquals(200, gzipped.statusCode());
+        Assert.assertEquals("gzip", gzipped.headers().firstValue("Content-Encoding").orElse(null));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.body()))) {
+            Assert.assertEquals(plain.body(), new String(in.readAllBytes()));
+        }
+    }
+
+    private void postMessages(int count) throws IOException, InterruptedException {
+        for (int i = 0; i < count; i++) {
+            HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{"+
+                            "\"posted_by\":1, " +
+                            "\"message_text\": \"compressible message number " + i + "\", " +
+                            "\"time_posted_epoch\": 1669947792}"))
+                    .header("Content-Type", "application/json")
+                    .build();
+            Assert.assertEquals(200, webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        }
+    }
+}
@@ -89,4 +89,41 @@ public class RetrieveAllMessagesForUserTest {
         List<Message> actualResult = objectMapper.readValue(response.body().toString(), new TypeReference<List<Message>>(){});
         Assert.assertTrue(actualResult.isEmpty());
     }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages, then POST localhost:8080/messages for
+     * user 1, then GET localhost:8080/accounts/1/messages again
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the second GET includes the new message
+     */
+    @Test
+    public void getAllMessagesFromUserAfterNewMessage() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/1/messages"))
+                .build();
+        HttpResponse<String> before = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(1, objectMapper.readValue(before.body(), new TypeReference<List<Message>>(){}).size());
+
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"hello message\", " +
+                        "\"time_posted_epoch\": 1669947793}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> posted = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, posted.statusCode());
+
+        HttpResponse<String> after = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, after.statusCode());
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(1, 1, "test message 1", 1669947792));
+        expectedResult.add(new Message(2, 1, "hello message", 1669947793));
+        List<Message> actualResult = objectMapper.readValue(after.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedResult, actualResult);
+    }
 }
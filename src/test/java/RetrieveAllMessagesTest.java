@@ -98,6 +98,71 @@ public class RetrieveAllMessagesTest {
     }
 
 
+    /**
+     * Sending an http request to GET localhost:8080/messages?ids=99,1&ids=1
+     * 
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON represenation of the found messages, in request order
+     *  X-Missing-Ids: 99
+     */
+    @Test
+    public void getMessagesByIdsInRequestOrder() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?ids=99,1&ids=1"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("99", response.headers().firstValue("X-Missing-Ids").orElse(null));
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(1, 1, "test message 1", 1669947792));
+        expectedResult.add(new Message(1, 1, "test message 1", 1669947792));
+        List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedResult, actualResult);
+
+        HttpRequest badRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?ids=1,x"))
+                .build();
+        Assert.assertEquals(400, webClient.send(badRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+
+    /**
+     * Inserting 1000 long messages, so the list outgrows the encoded body cache, then sending GET
+     * localhost:8080/messages twice
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: all 1001 messages both times, streamed from the database once the cache has given up on
+     *  the body
+     */
+    @Test
+    public void getAllMessagesLargerThanBodyCache() throws IOException, InterruptedException, SQLException {
+        String text = "x".repeat(250);
+        try (Connection conn = ConnectionUtil.getConnection();
+                PreparedStatement ps = conn.prepareStatement(
+                        "insert into message (posted_by, message_text, time_posted_epoch) values (1, ?, 1669947792)")) {
+            for (int i = 0; i < 1000; i++) {
+                ps.setString(1, text);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build();
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+            Assert.assertEquals(200, response.statusCode());
+            List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+            Assert.assertEquals(1001, actualResult.size());
+            Assert.assertEquals(text, actualResult.get(1000).getMessage_text());
+        }
+    }
 
     private void removeInitialMessage(){
         try {
@@ -0,0 +1,70 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.ConnectionUtil;
+
+public class StatementCacheTest {
+
+    /**
+     * Before every test, reset the database.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+    }
+
+    /**
+     * A statement reference kept after close() stays closed, even once the
+     * cached statement behind it has been handed to the next borrower.
+     */
+    @Test
+    public void staleStatementStaysClosed() throws SQLException {
+        String sql = "SELECT message_text FROM Message WHERE message_id = ?";
+        PreparedStatement stale;
+        try (Connection conn = ConnectionUtil.getConnection()) {
+            stale = conn.prepareStatement(sql);
+            stale.close();
+        }
+
+        try (Connection conn = ConnectionUtil.getConnection();
+                PreparedStatement current = conn.prepareStatement(sql)) {
+            Assert.assertTrue(stale.isClosed());
+            Assert.assertThrows(SQLException.class, () -> stale.setInt(1, 1));
+            current.setInt(1, 1);
+            try (ResultSet rs = current.executeQuery()) {
+                Assert.assertTrue(rs.next());
+                Assert.assertEquals("test message 1", rs.getString(1));
+            }
+        }
+    }
+
+    /**
+     * Returning a connection whose unclosed cached statements cannot be reset
+     * drops those statements instead of failing, and the connection stays usable.
+     */
+    @Test
+    public void unresettableStatementsAreDropped() throws SQLException {
+        String first = "SELECT account_id FROM Account WHERE account_id = ?";
+        String second = "SELECT username FROM Account WHERE account_id = ?";
+        Connection conn = ConnectionUtil.getConnection();
+        // close the driver's statements behind the cache's back, so resetting them fails
+        conn.prepareStatement(first).unwrap(PreparedStatement.class).close();
+        conn.prepareStatement(second).unwrap(PreparedStatement.class).close();
+        conn.close();
+
+        try (Connection again = ConnectionUtil.getConnection();
+                PreparedStatement ps = again.prepareStatement(second)) {
+            ps.setInt(1, 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                Assert.assertTrue(rs.next());
+                Assert.assertEquals("testuser1", rs.getString(1));
+            }
+        }
+    }
+}
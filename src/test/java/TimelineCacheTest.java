@@ -0,0 +1,76 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Model.Message;
+import Service.MessageService;
+import Util.ConnectionPool;
+import Util.ConnectionUtil;
+
+public class TimelineCacheTest {
+    ConnectionPool pool;
+    MessageService messageService;
+
+    /**
+     * Before every test, reset the database and create a fresh service, so
+     * its caches start empty.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        pool = ConnectionUtil.getPool();
+        messageService = new MessageService();
+    }
+
+    /**
+     * A timeline too long to cache is remembered as such, so later reads run
+     * one full query instead of a capped one followed by a full one.
+     */
+    @Test
+    public void tooLongTimelineQueriedOnce() throws SQLException {
+        try (Connection conn = ConnectionUtil.getConnection();
+                PreparedStatement ps = conn.prepareStatement(
+                        "insert into message (posted_by, message_text, time_posted_epoch) values (1, 'more', 1669947792)")) {
+            for (int i = 0; i < 1000; i++) {
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        long borrowsBefore = pool.getTotalBorrows();
+        Assert.assertEquals(1001, messageService.getAllByUserId(1).size());
+        Assert.assertEquals(2, pool.getTotalBorrows() - borrowsBefore);
+
+        borrowsBefore = pool.getTotalBorrows();
+        Assert.assertEquals(1001, messageService.getAllByUserId(1).size());
+        Assert.assertEquals(1, pool.getTotalBorrows() - borrowsBefore);
+    }
+
+    /**
+     * A query that fails is reported to the caller instead of caching an
+     * empty timeline.
+     */
+    @Test
+    public void failedLoadIsNotCached() throws SQLException {
+        try (Connection conn = ConnectionUtil.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE message RENAME TO message_away");
+        }
+        try {
+            Assert.assertThrows(RuntimeException.class, () -> messageService.getAllByUserId(1));
+        } finally {
+            try (Connection conn = ConnectionUtil.getConnection(); Statement stmt = conn.createStatement()) {
+                stmt.execute("ALTER TABLE message_away RENAME TO message");
+            }
+        }
+
+        List<Message> timeline = messageService.getAllByUserId(1);
+        Assert.assertEquals(1, timeline.size());
+        Assert.assertEquals("test message 1", timeline.get(0).getMessage_text());
+    }
+}
@@ -0,0 +1,96 @@
+import java.sql.Connection;
+import java.util.Optional;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountDao;
+import Model.Account;
+import Model.Message;
+import Service.AccountService;
+import Service.MessageService;
+import Util.ConnectionPool;
+import Util.ConnectionUtil;
+import Util.UnitOfWork;
+
+public class UnitOfWorkTest {
+    ConnectionPool pool;
+
+    /**
+     * Before every test, reset the database.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        pool = ConnectionUtil.getPool();
+    }
+
+    /**
+     * Every getConnection inside a unit of work returns the same shared
+     * connection, borrowed from the pool once.
+     */
+    @Test
+    public void runSharesOneConnection() {
+        long borrowsBefore = pool.getTotalBorrows();
+
+        UnitOfWork.run(() -> {
+            Connection first = ConnectionUtil.getConnection();
+            Connection second = ConnectionUtil.getConnection();
+            Assert.assertSame(first, second);
+            return null;
+        });
+
+        Assert.assertEquals(1, pool.getTotalBorrows() - borrowsBefore);
+    }
+
+    /**
+     * Work that throws inside a transaction leaves nothing behind.
+     */
+    @Test
+    public void inTransactionRollsBackOnFailure() {
+        AccountDao accountDao = new AccountDao();
+
+        Assert.assertThrows(IllegalStateException.class, () -> UnitOfWork.inTransaction(() -> {
+            accountDao.create(new Account("rolledback", "hashed"));
+            throw new IllegalStateException("abort");
+        }));
+
+        Assert.assertTrue(accountDao.getByUsername("rolledback").isEmpty());
+    }
+
+    /**
+     * createForExistingPoster checks the poster in memory and borrows a
+     * connection only for the insert, so an unknown poster borrows none.
+     */
+    @Test
+    public void createForExistingPosterBorrowsOnlyToInsert() {
+        MessageService messageService = new MessageService();
+        long borrowsBefore = pool.getTotalBorrows();
+
+        Optional<Message> created = messageService.createForExistingPoster(new Message(1, "shared", 1669947792));
+        Assert.assertTrue(created.isPresent());
+        Assert.assertEquals(1, pool.getTotalBorrows() - borrowsBefore);
+
+        Optional<Message> rejected = messageService.createForExistingPoster(new Message(99, "nobody", 1669947792));
+        Assert.assertTrue(rejected.isEmpty());
+        Assert.assertEquals(1, pool.getTotalBorrows() - borrowsBefore);
+    }
+
+    /**
+     * AccountService.update reads the old username and writes the new one in
+     * one transaction, and the old name no longer resolves afterwards.
+     */
+    @Test
+    public void updateAccountBorrowsOnce() {
+        AccountService accountService = new AccountService();
+        Assert.assertTrue(accountService.getByUsername("testuser1").isPresent());
+        long borrowsBefore = pool.getTotalBorrows();
+
+        accountService.update(new Account(1, "renamed", "password"));
+
+        Assert.assertEquals(1, pool.getTotalBorrows() - borrowsBefore);
+        Assert.assertTrue(accountService.getByUsername("testuser1").isEmpty());
+        Assert.assertTrue(accountService.getByUsername("renamed").isPresent());
+    }
+}
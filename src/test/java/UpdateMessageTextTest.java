@@ -139,4 +139,36 @@ public class UpdateMessageTextTest {
         Assert.assertEquals(400, status);        
         Assert.assertTrue(response.body().toString().isEmpty());
     }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1, then PATCH localhost:8080/messages/1, then
+     * GET localhost:8080/messages/1 again
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the second GET returns the updated message, not the one read before the update
+     */
+    @Test
+    public void updateMessageThenRetrieveReturnsUpdatedText() throws IOException, InterruptedException {
+        HttpRequest getMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .build();
+        HttpResponse<String> before = webClient.send(getMessageRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792),
+                objectMapper.readValue(before.body(), Message.class));
+
+        HttpRequest patchMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{"+
+                        "\"message_text\": \"updated message\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> patched = webClient.send(patchMessageRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, patched.statusCode());
+
+        HttpResponse<String> after = webClient.send(getMessageRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, after.statusCode());
+        Assert.assertEquals(new Message(1, 1, "updated message", 1669947792),
+                objectMapper.readValue(after.body(), Message.class));
+    }
 }
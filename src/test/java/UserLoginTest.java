@@ -119,4 +119,185 @@ public class UserLoginTest {
         Assert.assertEquals("", response.body().toString());
 
     }
+
+    /**
+     * Sending an http request to POST localhost:8080/login for a username that does not exist, then registering
+     * that username, then logging in again
+     *
+     * Expected Response:
+     *  Status Code: 401 for the first login and 200 for the second
+     */
+    @Test
+    public void loginAfterRegisteringUnknownUsername() throws IOException, InterruptedException {
+        String credentials = "{" +
+                "\"username\": \"newuser\", " +
+                "\"password\": \"password\" }";
+        HttpRequest loginRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString(credentials))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpRequest registerRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString(credentials))
+                .header("Content-Type", "application/json")
+                .build();
+
+        Assert.assertEquals(401, webClient.send(loginRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assert.assertEquals(200, webClient.send(registerRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assert.assertEquals(200, webClient.send(loginRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/login with valid credentials, then GET
+     * localhost:8080/messages/1 with the returned token and with an unknown token, and POST
+     * localhost:8080/messages with an unknown token
+     *
+     * Expected Response:
+     *  Status Code: 200 with an X-Session-Token header for the login, 200 for both reads, since reads ignore the
+     *  token, and 401 for the write with the unknown token
+     */
+    @Test
+    public void loginIssuesSessionToken() throws IOException, InterruptedException {
+        String token = login();
+
+        HttpRequest withToken = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .header("Authorization", "Bearer " + token)
+                .build();
+        Assert.assertEquals(200, webClient.send(withToken, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest readWithUnknownToken = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .header("Authorization", "Bearer not-a-token")
+                .build();
+        Assert.assertEquals(200, webClient.send(readWithUnknownToken, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest writeWithUnknownToken = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"posted_by\":1, \"message_text\": \"hello\", \"time_posted_epoch\": 1669947792}"))
+                .header("Authorization", "Bearer not-a-token")
+                .build();
+        Assert.assertEquals(401, webClient.send(writeWithUnknownToken, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    /**
+     * Sending POST localhost:8080/login with an unknown token in the Authorization header
+     *
+     * Expected Response:
+     *  Status Code: 200, since /login ignores the token
+     */
+    @Test
+    public void loginIgnoresStaleToken() throws IOException, InterruptedException {
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"username\": \"testuser1\", " +
+                        "\"password\": \"password\" }"))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer expired-token")
+                .build();
+        Assert.assertEquals(200, webClient.send(postRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    /**
+     * Logging in as testuser1, then with its token posting as account 1 and as account 2, and deleting
+     * another account's message and its own message
+     *
+     * Expected Response:
+     *  Status Code: 200 when acting as account 1, 403 when posting as account 2 or deleting account 2's message
+     */
+    @Test
+    public void sessionTokenChecksMessageWrites() throws IOException, InterruptedException {
+        HttpRequest registerRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"other\", \"password\": \"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(registerRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        HttpRequest othersMessage = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"posted_by\":2, \"message_text\": \"not yours\", \"time_posted_epoch\": 1669947792}"))
+                .build();
+        Assert.assertEquals(200, webClient.send(othersMessage, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        String token = login();
+
+        HttpRequest postAsSelf = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"posted_by\":1, \"message_text\": \"mine\", \"time_posted_epoch\": 1669947792}"))
+                .header("Authorization", "Bearer " + token)
+                .build();
+        Assert.assertEquals(200, webClient.send(postAsSelf, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest postAsOther = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"posted_by\":2, \"message_text\": \"impostor\", \"time_posted_epoch\": 1669947792}"))
+                .header("Authorization", "Bearer " + token)
+                .build();
+        Assert.assertEquals(403, webClient.send(postAsOther, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest deleteOthers = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/2"))
+                .DELETE()
+                .header("Authorization", "Bearer " + token)
+                .build();
+        Assert.assertEquals(403, webClient.send(deleteOthers, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest deleteOwn = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .DELETE()
+                .header("Authorization", "Bearer " + token)
+                .build();
+        HttpResponse<String> deleted = webClient.send(deleteOwn, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, deleted.statusCode());
+        Assert.assertTrue(deleted.body().contains("\"message_id\":1"));
+    }
+
+    /**
+     * Sending six http requests to POST localhost:8080/login for the same username in quick succession
+     *
+     * Expected Response:
+     *  Status Code: 401 for the first five and 429 with a Retry-After header for the sixth
+     */
+    @Test
+    public void loginThrottledPerUsername() throws IOException, InterruptedException {
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"username\": \"testuser1\", " +
+                        "\"password\": \"wrongpassword\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(401, webClient.send(postRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        }
+        HttpResponse<String> throttled = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(429, throttled.statusCode());
+        Assert.assertTrue(throttled.headers().firstValue("Retry-After").isPresent());
+    }
+
+    /**
+     * Logs in as testuser1.
+     *
+     * @return the session token from the X-Session-Token header
+     */
+    private String login() throws IOException, InterruptedException {
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"username\": \"testuser1\", " +
+                        "\"password\": \"password\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> login = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, login.statusCode());
+        String token = login.headers().firstValue("X-Session-Token").orElse(null);
+        Assert.assertNotNull(token);
+        return token;
+    }
 }
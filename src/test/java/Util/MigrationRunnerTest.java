@@ -0,0 +1,106 @@
+package Util;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MigrationRunnerTest {
+    Connection conn;
+
+    /**
+     * Before every test, start from an empty private in-memory database, so
+     * the application's schema is left alone.
+     */
+    @Before
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:migration-runner-test;DB_CLOSE_DELAY=-1", "sa", "sa");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    /**
+     * Scripts run in manifest order, each is recorded once, and running the
+     * migrations again applies nothing.
+     */
+    @Test
+    public void migrateIsIdempotent() throws SQLException {
+        Assert.assertEquals(2, MigrationRunner.migrate(conn, "migrations/ordered/"));
+        Assert.assertEquals(List.of(1, 2), appliedVersions());
+
+        Assert.assertEquals(0, MigrationRunner.migrate(conn, "migrations/ordered/"));
+        Assert.assertEquals(List.of(1, 2), appliedVersions());
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO note (note_id, body, author) VALUES (1, 'hello', 'testuser1')");
+        }
+    }
+
+    /**
+     * Editing a script that has already been applied is reported instead of
+     * being skipped or run again.
+     */
+    @Test
+    public void changedScriptIsRejected() throws SQLException {
+        MigrationRunner.migrate(conn, "migrations/ordered/");
+
+        IllegalStateException failure = Assert.assertThrows(IllegalStateException.class,
+                () -> MigrationRunner.migrate(conn, "migrations/changed/"));
+        Assert.assertTrue(failure.getMessage().contains("V1__create_note.sql"));
+        Assert.assertEquals(List.of(1, 2), appliedVersions());
+    }
+
+    /**
+     * A manifest that lists versions out of order is rejected before any
+     * script runs.
+     */
+    @Test
+    public void unorderedManifestIsRejected() throws SQLException {
+        Assert.assertThrows(IllegalStateException.class,
+                () -> MigrationRunner.migrate(conn, "migrations/unordered/"));
+        Assert.assertEquals(List.of(), appliedVersions());
+    }
+
+    /**
+     * A failing script rolls back its data changes and is not recorded, but
+     * the DDL it ran before the failure stays, since H2 commits DDL at once.
+     */
+    @Test
+    public void failedScriptKeepsItsDdl() throws SQLException {
+        SQLException failure = Assert.assertThrows(SQLException.class,
+                () -> MigrationRunner.migrate(conn, "migrations/failing/"));
+        Assert.assertTrue(failure.getMessage().contains("V1__create_note_then_fail.sql"));
+
+        Assert.assertEquals(List.of(), appliedVersions());
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM note")) {
+            Assert.assertTrue(rs.next());
+            Assert.assertEquals(0, rs.getInt(1));
+        }
+        Assert.assertTrue(conn.getAutoCommit());
+    }
+
+    private List<Integer> appliedVersions() throws SQLException {
+        List<Integer> versions = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT version FROM schema_history ORDER BY version")) {
+            while (rs.next()) {
+                versions.add(rs.getInt(1));
+            }
+        }
+        return versions;
+    }
+}
@@ -0,0 +1 @@
+create table if not exists note (note_id int primary key, body varchar(1000));
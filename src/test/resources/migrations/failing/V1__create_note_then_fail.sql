@@ -0,0 +1,3 @@
+create table if not exists note (note_id int primary key, body varchar(255));
+insert into note (note_id, body) values (1, 'rolled back');
+insert into missing_table (id) values (1);
@@ -0,0 +1 @@
+alter table note add column if not exists author varchar(255);